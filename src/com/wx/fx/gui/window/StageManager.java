@@ -2,13 +2,29 @@ package com.wx.fx.gui.window;
 
 import com.wx.fx.util.BundleWrapper;
 import com.wx.properties.PropertiesManager;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class allows to manage the stages of the application. It facilitates the loading of the stage and allows to pass
@@ -28,7 +44,13 @@ import java.util.*;
  * <p>
  * Also, if a stage has a <b>negative group number</b>, it won't belong to any group (and thus, won't affect or be
  * affected by any other stage).
- * <p>
+ * <h3>Cache</h3> Closed stages are kept in a bounded cache (least recently used stages are dropped first, see {@link
+ * #setCacheSize(int)}), so that showing them again does not load their {@code FXML} file again. Stages can also be
+ * loaded in advance with {@link #preload(StageInfo...)}. Since a cached stage is reused as is, its controller should
+ * reset its state in {@link StageController#setArguments(Object...)}.
+ * <h3>Threading</h3> Stages are registered by their {@code StageInfo}, and by group for the stages that belong to one.
+ * The registry is only accessed from the FX thread: the methods of this class can be called from any thread, the work
+ * is run on the FX thread (right away if called from it, later otherwise).
  * <p>
  * Created on 08/07/2015
  *
@@ -37,36 +59,48 @@ import java.util.*;
  */
 public class StageManager {
 
+    private static final Map<StageInfo, Window> windows = new HashMap<>();
     private static final Map<Integer, LinkedList<Window>> groups = new HashMap<>();
-
-    private static String styleSheet = StageManager.class.getResource("/defaultStyle.css").toExternalForm();
-    private static Image appIcon;
+    private static final Pattern CLASS_REFERENCE = Pattern.compile(
+            "<\\?import\\s+([\\w.$]+)\\s*\\?>|fx:controller\\s*=\\s*\"([\\w.$]+)\"");
+    private static final int LOADER_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor backgroundLoader = loaderExecutor();
+
+    private static int cacheSize = 8;
+    private static final Map<StageInfo, Window> cache = new LinkedHashMap<StageInfo, Window>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StageInfo, Window> eldest) {
+            return size() > cacheSize;
+        }
+    };
 
     /**
-     * Get the current global stylesheet.
+     * Get the current global stylesheet, see {@link ThemeManager#getStyleSheet()}.
      *
      * @return Current stylesheet.
      */
     public static String getStyleSheet() {
-        return styleSheet;
+        return ThemeManager.getStyleSheet();
     }
 
     /**
-     * Set a global stylesheet that will be attached to any loaded stage.
+     * Set a global stylesheet that will be attached to any loaded stage, and replaced on the open ones. See {@link
+     * ThemeManager#setStyleSheet(String)}.
      *
      * @param styleSheet Stylesheet to apply to stages
      */
     public static void setStyleSheet(String styleSheet) {
-        StageManager.styleSheet = styleSheet;
+        ThemeManager.setStyleSheet(styleSheet);
     }
 
     /**
-     * Set the App icon. This icon will be appear on all stage window.
+     * Set the App icon. This icon will be appear on all stage window. To provide the icon at several sizes, see {@link
+     * ThemeManager#setIcons(String, int...)}.
      *
      * @param appIcon Icon to set to all stages
      */
     public static void setAppIcon(Image appIcon) {
-        StageManager.appIcon = appIcon;
+        ThemeManager.setIcons(appIcon == null ? new Image[0] : new Image[]{appIcon});
     }
 
 //    /**
@@ -87,12 +121,141 @@ public class StageManager {
 //        return loader;
 //    }
 
+    /**
+     * Set the maximum number of closed or preloaded stages kept in the cache, {@code 8} by default. A size of {@code
+     * 0} disables the cache.
+     *
+     * @param cacheSize Maximum number of cached stages
+     */
+    public static void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + cacheSize);
+        }
+
+        runOnFxThread(() -> {
+            StageManager.cacheSize = cacheSize;
+
+            Iterator<Window> it = cache.values().iterator();
+            while (cache.size() > cacheSize) {
+                it.next();
+                it.remove();
+            }
+        });
+    }
+
+    /**
+     * Drop all the cached stages, they will be loaded again next time they are shown.
+     */
+    public static void clearCache() {
+        runOnFxThread(cache::clear);
+    }
+
+    /**
+     * Load stages in advance, so that showing them for the first time is almost instant.
+     * <p>
+     * The {@code FXML} files are read, and the classes they reference are loaded, in the background. The stages are
+     * then built on the FX thread (as required by JavaFX) and put in the cache, unless they are shown in the
+     * meantime.
+     *
+     * @param stages Stages to load
+     */
+    public static void preload(StageInfo... stages) {
+        for (StageInfo stageInfo : stages) {
+            backgroundLoader.execute(() -> {
+                byte[] fxml;
+                try {
+                    fxml = readFxml(stageInfo);
+                } catch (IOException e) {
+                    // The error is reported when the stage is shown
+                    return;
+                }
+                loadReferencedClasses(fxml);
+
+                Platform.runLater(() -> {
+                    if (!windows.containsKey(stageInfo) && !cache.containsKey(stageInfo)) {
+                        try {
+                            cache.put(stageInfo, load(stageInfo, new ByteArrayInputStream(fxml)));
+                        } catch (IOException e) {
+                            // The error is reported when the stage is shown
+                        }
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * Warm up the application after its launch, so that the first stages shown are as fast to load as the next ones.
+     * This can be called from any thread, the work is done in the background, and in short steps on the FX thread:
+     * <ol> <li>{@link WarmUpReport.Phase#CLASSES}: the {@code FXML} files are read, and the classes they reference
+     * (controllers included) are loaded</li> <li>{@link WarmUpReport.Phase#STYLESHEETS}: the global stylesheet and the
+     * default JavaFX stylesheet are parsed, JavaFX keeps them once parsed</li> <li>{@link WarmUpReport.Phase#STAGES}:
+     * the stages are built, which fills the reflection caches of the {@code FXMLLoader}, and put in the cache (see
+     * {@link #setCacheSize(int)})</li> </ol>
+     *
+     * @param stages Stages to warm up
+     *
+     * @return The time spent in each phase, once the warm-up is done
+     */
+    public static CompletableFuture<WarmUpReport> warmUp(StageInfo... stages) {
+        long[] millis = new long[WarmUpReport.Phase.values().length];
+        Map<StageInfo, byte[]> fxmls = new LinkedHashMap<>();
+
+        CompletableFuture<Void> phases = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            for (StageInfo stageInfo : stages) {
+                try {
+                    byte[] fxml = readFxml(stageInfo);
+                    loadReferencedClasses(fxml);
+                    fxmls.put(stageInfo, fxml);
+                } catch (IOException e) {
+                    // The error is reported when the stage is shown
+                }
+            }
+            millis[WarmUpReport.Phase.CLASSES.ordinal()] = millisSince(start);
+
+        }, backgroundLoader).thenRunAsync(() -> {
+            long start = System.nanoTime();
+            parseStyleSheets();
+            millis[WarmUpReport.Phase.STYLESHEETS.ordinal()] = millisSince(start);
+
+        }, Platform::runLater);
+
+        for (StageInfo stageInfo : stages) {
+            // One stage at a time, so that the FX thread can handle the user's events in between
+            phases = phases.thenRunAsync(() -> {
+                byte[] fxml = fxmls.get(stageInfo);
+                if (fxml == null || windows.containsKey(stageInfo) || cache.containsKey(stageInfo)) {
+                    return;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    cache.put(stageInfo, load(stageInfo, new ByteArrayInputStream(fxml)));
+                } catch (IOException e) {
+                    // The error is reported when the stage is shown
+                }
+                millis[WarmUpReport.Phase.STAGES.ordinal()] += millisSince(start);
+            }, Platform::runLater);
+        }
+
+        return phases.thenApply(v -> new WarmUpReport(millis, fxmls.size()));
+    }
+
     /**
      * Close all stages.
      */
     public static void closeAll() {
-        groups.values().stream().flatMap(List::stream).forEach(w -> w.stage.close());
-        groups.clear();
+        runOnFxThread(() -> {
+            List<Window> closed = new ArrayList<>(windows.values());
+            windows.clear();
+            groups.clear();
+
+            for (Window window : closed) {
+                window.stage.close();
+                cache.put(window.info, window);
+            }
+        });
     }
 
     /**
@@ -101,11 +264,12 @@ public class StageManager {
      * @param stageInfo Stage to close
      */
     public static void close(StageInfo stageInfo) {
-        int groupIndex = stageInfo.stageGroup();
-        LinkedList<Window> group = group(groupIndex);
-
-        Window stage = findWindow(stageInfo, group);
-        closeAndRemove(groupIndex, group, stage);
+        runOnFxThread(() -> {
+            Window stage = windows.get(stageInfo);
+            if (stage != null) {
+                closeAndRemove(stage);
+            }
+        });
     }
 
 
@@ -125,28 +289,74 @@ public class StageManager {
      * @param args  Arguments to pass the stage's controller
      */
     public static void show(StageInfo stage, Object... args) {
-        show(args, stage, false);
+        runOnFxThread(() -> show(args, stage, false));
     }
 
     /**
-     * Show a stage and wait until the it is closed.
+     * Show a stage and wait until the it is closed. Like {@link Stage#showAndWait()}, this must be called from the FX
+     * thread.
      *
      * @param stage Stage to show
      * @param args  Arguments to pass the stage's controller
+     *
+     * @throws IllegalStateException If this is not called from the FX thread
      */
     public static void showAndWait(StageInfo stage, Object... args) {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("Not on the FX thread: " + Thread.currentThread().getName());
+        }
         show(args, stage, true);
     }
 
+    /**
+     * Show a stage without blocking the calling thread, which can be any thread. The {@code FXML} file is read, and the
+     * classes it references are loaded, in the background. The stage is then built (or taken from the cache) and
+     * shown on the FX thread. Several stages shown this way are loaded in parallel.
+     * <p>
+     * The result completes on the FX thread once the stage is shown and has received its arguments, so that the
+     * dependent actions that are not asynchronous run on the FX thread as well.
+     *
+     * @param stage Stage to show
+     * @param args  Arguments to pass the stage's controller
+     *
+     * @return The controller of the stage, once it is shown
+     */
+    public static CompletableFuture<StageController> showAsync(StageInfo stage, Object... args) {
+        CompletableFuture<StageController> result = new CompletableFuture<>();
+
+        backgroundLoader.execute(() -> {
+            byte[] fxml;
+            try {
+                fxml = readFxml(stage);
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            loadReferencedClasses(fxml);
+
+            Platform.runLater(() -> {
+                try {
+                    result.complete(show(args, stage, false, fxml).controller);
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+
+        return result;
+    }
+
     private static void show(Object[] args, StageInfo stageInfo, boolean wait) {
-        int groupIndex = stageInfo.stageGroup();
-        LinkedList<Window> group = group(groupIndex);
+        show(args, stageInfo, wait, null);
+    }
 
-        Window existingStage = findWindow(stageInfo, group);
+    private static Window show(Object[] args, StageInfo stageInfo, boolean wait, byte[] fxml) {
+        int groupIndex = stageInfo.stageGroup();
+        Window existingStage = windows.get(stageInfo);
 
-        if (groupIndex >= 0 && !group.isEmpty()) {
+        if (groupIndex >= 0) {
             // Hide any other stage of the same group
-            group.stream()
+            group(groupIndex).stream()
                     .filter(s -> !s.equals(existingStage))
                     .forEach(w -> w.stage.close());
         }
@@ -157,65 +367,148 @@ public class StageManager {
             if (args != null && args.length > 0) {
                 existingStage.controller.setArguments(args);
             }
+            return existingStage;
 
         } else {
             try {
-                // Load the stage
-                FXMLLoader loader = new FXMLLoader(
-                        StageManager.class.getResource(stageInfo.location()),
-                        stageInfo.getBundleBase()
-                        );
-
-                Stage stage = loader.load();
-                StageController controller = loader.getController();
-                Window window = new Window(stageInfo, stage, controller);
-                group.add(window);
-
-                if (styleSheet != null) {
-                    stage.getScene().getStylesheets().add(styleSheet);
+                // Reuse the stage if it has been closed or preloaded, load it otherwise
+                Window window = cache.remove(stageInfo);
+                if (window == null) {
+                    window = load(stageInfo, fxml == null ? null : new ByteArrayInputStream(fxml));
                 }
-                if (appIcon != null) {
-                    stage.getIcons().add(appIcon);
+                windows.put(stageInfo, window);
+                if (groupIndex >= 0) {
+                    group(groupIndex).add(window);
                 }
 
-                if (stageInfo.isModal()) {
-                    stage.initModality(Modality.APPLICATION_MODAL);
+                Stage stage = window.stage;
+                StageController controller = window.controller;
+
+                if (wait) {
+                    // showAndWait() only returns once the stage is closed
+                    if (args.length > 0) {
+                        controller.setArguments(args);
+                    }
+                    stage.showAndWait();
+
+                } else {
+                    stage.show();
+
+                    if (args.length > 0) {
+                        controller.setArguments(args);
+                    }
                 }
+                return window;
 
-                stage.setOnHiding(e -> controller.closing());
-                stage.setOnCloseRequest(e -> closeAndRemove(groupIndex, group, window));
+            } catch (IOException e) {
+                throw new RuntimeException("Internal error, failed to load the stage " + stageInfo, e);
+            }
+        }
+    }
 
-                controller.setContext(stage);
+    private static Window load(StageInfo stageInfo, InputStream fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(
+                StageManager.class.getResource(stageInfo.location()),
+                stageInfo.getBundleBase()
+        );
 
+        Stage stage = fxml == null ? loader.load() : loader.load(fxml);
+        StageController controller = loader.getController();
+        Window window = new Window(stageInfo, stage, controller);
 
-                stage.show();
+        ThemeManager.register(stage);
 
-                if (args.length > 0) {
-                    controller.setArguments(args);
-                }
+        if (stageInfo.isModal()) {
+            stage.initModality(Modality.APPLICATION_MODAL);
+        }
 
-                if (wait) {
-                    stage.showAndWait();
-                }
+        stage.setOnHiding(e -> controller.closing());
+        stage.setOnCloseRequest(e -> closeAndRemove(window));
 
-            } catch (IOException e) {
-                throw new RuntimeException("Internal error, failed to load the stage " + stageInfo, e);
+        controller.setContext(stage);
+
+        return window;
+    }
+
+    private static byte[] readFxml(StageInfo stageInfo) throws IOException {
+        URL location = StageManager.class.getResource(stageInfo.location());
+        if (location == null) {
+            throw new IOException("Stage not found: " + stageInfo.location());
+        }
+
+        try (InputStream in = location.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void loadReferencedClasses(byte[] fxml) {
+        // Loading the classes is a large part of the first load of a stage, and it does not require the FX thread
+        Matcher matcher = CLASS_REFERENCE.matcher(new String(fxml, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            try {
+                Class.forName(name, false, StageManager.class.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Package import, or a class that FXMLLoader will report
             }
         }
     }
 
-    private static void closeAndRemove(int groupIndex, LinkedList<Window> group, Window stage) {
+    private static void closeAndRemove(Window stage) {
+        int groupIndex = stage.info.stageGroup();
+
         stage.stage.close();
-        group.remove(stage);
-        if (groupIndex >= 0 && !group.isEmpty()) {
-            group.getLast().stage.show();
+        if (windows.remove(stage.info, stage)) {
+            cache.put(stage.info, stage);
+        }
+        if (groupIndex >= 0) {
+            LinkedList<Window> group = group(groupIndex);
+            group.remove(stage);
+            if (!group.isEmpty()) {
+                group.getLast().stage.show();
+            }
+        }
+    }
+
+    private static void parseStyleSheets() {
+        // A scene parses its stylesheets on its first CSS pass, the label requires the default JavaFX stylesheet
+        Scene scene = new Scene(new Group(new Label()));
+        String styleSheet = ThemeManager.getStyleSheet();
+        if (styleSheet != null) {
+            scene.getStylesheets().add(styleSheet);
         }
+        scene.getRoot().applyCss();
     }
 
-    private static Window findWindow(StageInfo info, List<Window> group) {
-        return group.stream()
-                .filter(w -> w.info.equals(info))
-                .findAny().orElse(null);
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+
+    private static ThreadPoolExecutor loaderExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "stage-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    static void runOnFxThread(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
     }
 
     private static LinkedList<Window> group(int number) {
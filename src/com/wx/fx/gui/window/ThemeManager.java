@@ -0,0 +1,185 @@
+package com.wx.fx.gui.window;
+
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * This class manages the theme shared by all the stages: a global stylesheet and the application icons.
+ * <p>
+ * The stages loaded by the {@link StageManager} are registered automatically, other stages (such as the primary stage)
+ * can be registered with {@link #register(Stage)}. Changing the stylesheet or the icons updates all the registered
+ * stages, including the open ones. Stages are only weakly referenced, so a registered stage can still be garbage
+ * collected.
+ * <p>
+ * Icons are decoded once, at several sizes, and the same images are shared by all the stages. The window manager
+ * picks the size that fits best.
+ * <p>
+ * The methods of this class can be called from any thread, the stages are updated on the FX thread.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public final class ThemeManager {
+
+    private static final int[] DEFAULT_ICON_SIZES = {16, 24, 32, 48, 64, 128, 256};
+
+    private static final Set<Stage> stages = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static volatile String styleSheet = ThemeManager.class.getResource("/defaultStyle.css").toExternalForm();
+    private static volatile List<Image> icons = Collections.emptyList();
+
+    // Stylesheet and icons of the registered stages, only accessed from the FX thread
+    private static String appliedStyleSheet = styleSheet;
+    private static List<Image> appliedIcons = icons;
+
+    private ThemeManager() {
+    }
+
+    /**
+     * Get the current global stylesheet.
+     *
+     * @return Current stylesheet, or {@code null}
+     */
+    public static String getStyleSheet() {
+        return styleSheet;
+    }
+
+    /**
+     * Set the global stylesheet, attached to every registered stage. The stylesheet of the open stages is replaced.
+     *
+     * @param styleSheet URL of the stylesheet, or {@code null} to remove it
+     */
+    public static void setStyleSheet(String styleSheet) {
+        ThemeManager.styleSheet = styleSheet;
+        StageManager.runOnFxThread(ThemeManager::update);
+    }
+
+    /**
+     * Replace the default JavaFX stylesheet (Modena) of the whole application. Unlike {@link #setStyleSheet(String)},
+     * this also applies to the scenes that are not attached to a registered stage, such as dialogs and popups.
+     *
+     * @param styleSheet URL of the stylesheet, or {@code null} to restore the default one
+     */
+    public static void setUserAgentStyleSheet(String styleSheet) {
+        StageManager.runOnFxThread(() -> Application.setUserAgentStylesheet(styleSheet));
+    }
+
+    /**
+     * @return The icons attached to every registered stage
+     */
+    public static List<Image> getIcons() {
+        return icons;
+    }
+
+    /**
+     * Set the application icon, decoded at the usual sizes of the icons (from 16 to 256 pixels).
+     *
+     * @param url URL of the icon
+     *
+     * @throws IllegalArgumentException If the icon cannot be decoded
+     */
+    public static void setIcons(String url) {
+        setIcons(url, DEFAULT_ICON_SIZES);
+    }
+
+    /**
+     * Set the application icon, decoded once at each of the given sizes.
+     *
+     * @param url   URL of the icon
+     * @param sizes Sizes at which the icon is decoded, in pixels
+     *
+     * @throws IllegalArgumentException If the icon cannot be decoded
+     */
+    public static void setIcons(String url, int... sizes) {
+        List<Image> decoded = new ArrayList<>(sizes.length);
+        for (int size : sizes) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Icon size must be positive: " + size);
+            }
+
+            Image icon = new Image(url, size, size, true, true);
+            if (icon.isError()) {
+                throw new IllegalArgumentException("Cannot decode the icon " + url, icon.getException());
+            }
+            decoded.add(icon);
+        }
+
+        setIcons(decoded.toArray(new Image[0]));
+    }
+
+    /**
+     * Set the application icons, attached to every registered stage. The icons of the open stages are replaced.
+     *
+     * @param icons Icons, ideally the same image at several sizes
+     */
+    public static void setIcons(Image... icons) {
+        ThemeManager.icons = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(icons)));
+        StageManager.runOnFxThread(ThemeManager::update);
+    }
+
+    /**
+     * Attach the global stylesheet and the icons to a stage, and keep them up to date.
+     *
+     * @param stage Stage to register
+     */
+    public static void register(Stage stage) {
+        StageManager.runOnFxThread(() -> {
+            if (stages.add(stage)) {
+                apply(stage, null, appliedStyleSheet, Collections.emptyList(), appliedIcons);
+            }
+        });
+    }
+
+    /**
+     * Stop updating the stylesheet and the icons of a stage. The current ones are left on the stage.
+     *
+     * @param stage Stage to unregister
+     */
+    public static void unregister(Stage stage) {
+        StageManager.runOnFxThread(() -> stages.remove(stage));
+    }
+
+    private static void update() {
+        String newStyleSheet = styleSheet;
+        List<Image> newIcons = icons;
+        if (Objects.equals(newStyleSheet, appliedStyleSheet) && newIcons.equals(appliedIcons)) {
+            return;
+        }
+
+        for (Stage stage : new ArrayList<>(stages)) {
+            apply(stage, appliedStyleSheet, newStyleSheet, appliedIcons, newIcons);
+        }
+        appliedStyleSheet = newStyleSheet;
+        appliedIcons = newIcons;
+    }
+
+    private static void apply(Stage stage, String oldStyleSheet, String newStyleSheet,
+                              List<Image> oldIcons, List<Image> newIcons) {
+        Scene scene = stage.getScene();
+        if (scene != null && !Objects.equals(oldStyleSheet, newStyleSheet)) {
+            if (oldStyleSheet != null) {
+                scene.getStylesheets().remove(oldStyleSheet);
+            }
+            if (newStyleSheet != null) {
+                scene.getStylesheets().add(newStyleSheet);
+            }
+        }
+
+        if (oldIcons != newIcons) {
+            stage.getIcons().removeAll(oldIcons);
+            stage.getIcons().addAll(newIcons);
+        }
+    }
+}
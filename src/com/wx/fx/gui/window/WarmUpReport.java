@@ -0,0 +1,80 @@
+package com.wx.fx.gui.window;
+
+/**
+ * Time spent in each phase of a warm-up started with {@link StageManager#warmUp(StageInfo...)}.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public final class WarmUpReport {
+
+    /**
+     * Phases of a warm-up, in their execution order.
+     */
+    public enum Phase {
+        /**
+         * Read the {@code FXML} files and load the classes they reference, in the background.
+         */
+        CLASSES,
+        /**
+         * Parse the global stylesheet and the default JavaFX stylesheet, on the FX thread.
+         */
+        STYLESHEETS,
+        /**
+         * Build the stages and put them in the cache, on the FX thread. This fills the caches of the {@code
+         * FXMLLoader}.
+         */
+        STAGES
+    }
+
+    private final long[] millis;
+    private final int stages;
+
+    WarmUpReport(long[] millis, int stages) {
+        this.millis = millis.clone();
+        this.stages = stages;
+    }
+
+    /**
+     * @param phase Phase of the warm-up
+     *
+     * @return Time spent in the phase, in milliseconds
+     */
+    public long getMillis(Phase phase) {
+        return millis[phase.ordinal()];
+    }
+
+    /**
+     * @return Time spent in all the phases, in milliseconds. This does not include the time spent waiting for the FX
+     * thread between the phases
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (long phase : millis) {
+            total += phase;
+        }
+        return total;
+    }
+
+    /**
+     * @return Number of stages warmed up, without the stages that could not be read
+     */
+    public int getStages() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("warm-up of ").append(stages).append(" stages in ")
+                .append(getTotalMillis()).append(" ms (");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(phase).append(": ").append(getMillis(phase)).append(" ms");
+        }
+        return builder.append(')').toString();
+    }
+}
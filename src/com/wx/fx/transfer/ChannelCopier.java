@@ -0,0 +1,215 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.function.Supplier;
+
+/**
+ * Copies files with a {@link CopyStrategy}, by default {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} which lets the operating system move the bytes without any user-space buffer.
+ * <p>
+ * The file is copied in chunks of a configurable size. A {@link ChunkListener} is notified after each chunk, which
+ * allows to report byte-level progress and to abort a copy (by throwing) between two chunks.
+ * <p>
+ * If the copies must be verified, the bytes go through a buffer instead, so that their checksum is computed while
+ * they are copied. The destination is then read back and compared to that checksum, the source is never read twice.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class ChannelCopier {
+
+    static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Listener notified after each copied chunk.
+     */
+    @FunctionalInterface
+    interface ChunkListener {
+
+        /**
+         * Called after a chunk has been copied. Throwing aborts the copy.
+         *
+         * @param bytes Number of bytes of the chunk
+         *
+         * @throws IOException To abort the copy
+         */
+        void transferred(long bytes) throws IOException;
+    }
+
+    private final long chunkSize;
+    private final Supplier<StreamChecksum> verification;
+
+    /**
+     * @param chunkSize    Maximum number of bytes copied between two notifications
+     * @param verification Checksum used to verify the copies, or {@code null} to disable verification
+     */
+    ChannelCopier(long chunkSize, Supplier<StreamChecksum> verification) {
+        this.chunkSize = chunkSize;
+        this.verification = verification;
+    }
+
+    /**
+     * Listener notified when a prefix of the destination has been flushed to the disk.
+     */
+    @FunctionalInterface
+    interface Checkpoint {
+
+        /**
+         * Called once the first bytes of the destination are guaranteed to be on the disk.
+         *
+         * @param offset Number of bytes flushed
+         *
+         * @throws IOException To abort the copy
+         */
+        void reached(long offset) throws IOException;
+    }
+
+    /**
+     * Copy a file, replacing the destination if it exists.
+     *
+     * @param from     Source file
+     * @param to       Destination file
+     * @param strategy Strategy copying the chunks, resolved for the source of the file (see {@link
+     *                 CopyStrategy#forSource(Path)})
+     * @param listener Listener notified after each chunk
+     *
+     * @throws IOException If the copy failed
+     */
+    void copy(Path from, Path to, CopyStrategy strategy, ChunkListener listener) throws IOException {
+        copy(from, to, 0, strategy, listener, null);
+    }
+
+    /**
+     * Copy a file, resuming from the given offset. The destination is expected to already contain the first {@code
+     * offset} bytes of the source, any byte after them is discarded.
+     *
+     * @param from       Source file
+     * @param to         Destination file
+     * @param offset     Number of bytes already copied
+     * @param strategy   Strategy copying the chunks, resolved for the source of the file
+     * @param listener   Listener notified after each chunk
+     * @param checkpoint If not {@code null}, the destination is flushed to the disk after each chunk and this is
+     *                   notified
+     *
+     * @throws IOException               If the copy failed
+     * @throws ChecksumMismatchException If the copy is verified and does not match the source
+     */
+    void copy(Path from, Path to, long offset, CopyStrategy strategy, ChunkListener listener, Checkpoint checkpoint)
+            throws IOException {
+        if (Files.exists(to) && Files.isSameFile(from, to)) {
+            return;
+        }
+
+        StreamChecksum checksum = verification != null ? verification.get() : null;
+
+        OpenOption[] options;
+        if (offset == 0) {
+            // Replace the destination like Files.copy does, a previous copy may have left it read-only
+            Files.deleteIfExists(to);
+            options = new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW};
+        } else {
+            options = new OpenOption[]{StandardOpenOption.WRITE};
+        }
+
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, options)) {
+
+            out.truncate(offset);
+            out.position(offset);
+
+            long size = in.size();
+            CopyStrategy fileStrategy = strategy.forFile(from, size);
+            long position = offset;
+            while (position < size) {
+                long count = transferChunk(from, fileStrategy, in, out, position,
+                        Math.min(chunkSize, size - position), checksum);
+                if (count <= 0) {
+                    break; // Source has been truncated meanwhile
+                }
+
+                position += count;
+                if (checkpoint != null) {
+                    out.force(false);
+                    checkpoint.reached(position);
+                }
+                listener.transferred(count);
+            }
+        }
+
+        if (checksum != null) {
+            verify(from, to, offset, checksum.value());
+        }
+        copyPermissions(from, to);
+    }
+
+    private static long transferChunk(Path from, CopyStrategy strategy, FileChannel in, FileChannel out,
+                                      long position, long count, StreamChecksum checksum) throws IOException {
+        if (checksum == null) {
+            try {
+                return strategy.copy(in, position, count, out);
+            } catch (InternalError e) {
+                // A mapped source truncated or unreachable while being read
+                throw new IOException("Cannot read " + from, e);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+
+            int read = in.read(buffer, position + transferred);
+            if (read < 0) {
+                break;
+            }
+            checksum.update(buffer.array(), 0, read);
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    private void verify(Path from, Path to, long offset, byte[] expected) throws IOException {
+        StreamChecksum checksum = verification.get();
+
+        try (FileChannel in = FileChannel.open(to, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = offset;
+            int read;
+            while ((read = in.read(buffer, position)) >= 0) {
+                checksum.update(buffer.array(), 0, read);
+                position += read;
+                buffer.clear();
+            }
+        }
+
+        if (!MessageDigest.isEqual(expected, checksum.value())) {
+            throw new ChecksumMismatchException(from, to);
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        // Files.copy keeps the permissions of the source (eg: executable flags), so does this copier
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+    }
+}
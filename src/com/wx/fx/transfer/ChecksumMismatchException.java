@@ -0,0 +1,42 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Thrown when a verified copy does not match its source, see {@link TransferTask.Builder#setVerification(String)}.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public class ChecksumMismatchException extends IOException {
+
+    private final Path source;
+    private final Path destination;
+
+    /**
+     * @param source      Copied file
+     * @param destination Copy that does not match the source
+     */
+    public ChecksumMismatchException(Path source, Path destination) {
+        super("Copy of " + source + " to " + destination + " does not match its source");
+        this.source = source;
+        this.destination = destination;
+    }
+
+    /**
+     * @return The copied file
+     */
+    public Path getSource() {
+        return source;
+    }
+
+    /**
+     * @return The copy that does not match its source
+     */
+    public Path getDestination() {
+        return destination;
+    }
+}
@@ -0,0 +1,123 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Implementations of the {@link CopyStrategy} constants.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class CopyStrategies {
+
+    static final long SMALL_FILE_SIZE = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final Set<String> NETWORK_TYPES = new HashSet<>(Arrays.asList(
+            "nfs", "nfs4", "cifs", "smbfs", "smb2", "smb3", "9p", "afs", "ncpfs", "fuse.sshfs", "webdav", "davfs"));
+
+    /**
+     * Automatic strategy for the files of a local source.
+     */
+    private static final CopyStrategy LOCAL = new CopyStrategy() {
+        @Override
+        public long copy(FileChannel source, long position, long count, FileChannel target) throws IOException {
+            return transfer(source, position, count, target);
+        }
+
+        @Override
+        public CopyStrategy forFile(Path source, long size) {
+            // A single read and write for small files, cheaper than setting up a transfer
+            return size < SMALL_FILE_SIZE ? CopyStrategy.STREAM : CopyStrategy.TRANSFER;
+        }
+
+        @Override
+        public String toString() {
+            return "AUTOMATIC";
+        }
+    };
+
+    static final CopyStrategy AUTOMATIC = new CopyStrategy() {
+        @Override
+        public long copy(FileChannel source, long position, long count, FileChannel target) throws IOException {
+            return transfer(source, position, count, target);
+        }
+
+        @Override
+        public CopyStrategy forSource(Path root) {
+            // Mapping a remote file is unsafe, and transfers are emulated with a buffer anyway
+            return isNetwork(root) ? CopyStrategy.STREAM : LOCAL;
+        }
+
+        @Override
+        public CopyStrategy forFile(Path source, long size) {
+            // Only reached when the source was not resolved first
+            return size < SMALL_FILE_SIZE ? CopyStrategy.STREAM : forSource(source).forFile(source, size);
+        }
+
+        @Override
+        public String toString() {
+            return "AUTOMATIC";
+        }
+    };
+
+    private CopyStrategies() {
+    }
+
+    static long stream(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count));
+        long copied = 0;
+        while (copied < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - copied));
+
+            int read = source.read(buffer, position + copied);
+            if (read < 0) {
+                break;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            copied += read;
+        }
+        return copied;
+    }
+
+    static long transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        return source.transferTo(position, count, target);
+    }
+
+    static long mapped(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        long length = Math.min(Math.min(count, Integer.MAX_VALUE), source.size() - position);
+        if (length <= 0) {
+            return 0;
+        }
+
+        MappedByteBuffer buffer = source.map(FileChannel.MapMode.READ_ONLY, position, length);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return length;
+    }
+
+    private static boolean isNetwork(Path file) {
+        try {
+            return NETWORK_TYPES.contains(Files.getFileStore(file).type().toLowerCase(Locale.ROOT));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
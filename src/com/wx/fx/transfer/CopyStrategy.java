@@ -0,0 +1,84 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Copies the bytes of a file, one chunk at a time, for the {@link TransferTask.Action#COPY}, {@link
+ * TransferTask.Action#SYNC} and cross-device {@link TransferTask.Action#MOVE} actions.
+ * <p>
+ * Progress, cancellation, resumption and chunking are handled by the caller, a strategy only moves the bytes of a
+ * chunk. Verified copies (see {@link TransferTask.Builder#setVerification(String)}) always go through a buffer, since
+ * the bytes must be read to compute their checksum.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public interface CopyStrategy {
+
+    /**
+     * Read the source through a heap buffer, like a stream copy.
+     */
+    CopyStrategy STREAM = CopyStrategies::stream;
+
+    /**
+     * Let the operating system move the bytes with {@link FileChannel#transferTo(long, long,
+     * java.nio.channels.WritableByteChannel)}, without any user-space buffer.
+     */
+    CopyStrategy TRANSFER = CopyStrategies::transfer;
+
+    /**
+     * Map the source in memory with {@link FileChannel#map(FileChannel.MapMode, long, long)} and write the mapped
+     * chunk to the destination. This must only be used for local files, a mapped file that is truncated or becomes
+     * unreachable fails the copy with an {@link IOException}, where the other strategies stop at its new end.
+     */
+    CopyStrategy MAPPED = CopyStrategies::mapped;
+
+    /**
+     * Pick a strategy for each file: {@link #STREAM} for small files and network file systems, {@link #TRANSFER}
+     * otherwise. The file system is checked once per source. {@link #MAPPED} is never picked, it must be requested.
+     */
+    CopyStrategy AUTOMATIC = CopyStrategies.AUTOMATIC;
+
+    /**
+     * Copy a chunk of the source to the current position of the destination, advancing that position.
+     *
+     * @param source   Source file
+     * @param position Position of the chunk in the source
+     * @param count    Maximum number of bytes to copy
+     * @param target   Destination file
+     *
+     * @return The number of bytes copied, {@code 0} if the source ends before the chunk
+     *
+     * @throws IOException If the chunk cannot be copied
+     */
+    long copy(FileChannel source, long position, long count, FileChannel target) throws IOException;
+
+    /**
+     * Select the strategy used to copy the files of a source, called once per source before its files are copied.
+     * By default, this strategy itself.
+     *
+     * @param root Source file or directory
+     *
+     * @return The strategy copying the files of the source
+     */
+    default CopyStrategy forSource(Path root) {
+        return this;
+    }
+
+    /**
+     * Select the strategy used to copy a file, called on the strategy returned by {@link #forSource(Path)}. By
+     * default, this strategy itself.
+     *
+     * @param source File to copy
+     * @param size   Size of the file
+     *
+     * @return The strategy copying the file
+     */
+    default CopyStrategy forFile(Path source, long size) {
+        return this;
+    }
+}
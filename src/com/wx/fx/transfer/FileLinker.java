@@ -0,0 +1,163 @@
+package com.wx.fx.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duplicates files without copying their bytes, with a hard link or a copy-on-write clone (reflink), for the {@link
+ * TransferTask.CopyMode#HARD_LINK} and {@link TransferTask.CopyMode#REFLINK} modes.
+ * <p>
+ * Java does not expose file cloning, so reflinks are made by the {@code cp} command of Linux ({@code --reflink=always},
+ * supported by Btrfs, XFS, ...) and macOS ({@code -c}, supported by APFS). Since this starts a process, only large
+ * files are cloned. Once a device reports that it cannot link files, it is not tried again.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class FileLinker {
+
+    private static final long REFLINK_MIN_SIZE = 1024 * 1024;
+    private static final String[] REFLINK_COMMAND = reflinkCommand();
+    // Errors of cp telling that the device cannot clone files (EOPNOTSUPP, EINVAL, EXDEV)
+    private static final List<String> REFLINK_UNSUPPORTED = Arrays.asList(
+            "not supported", "invalid argument", "cross-device");
+
+    private enum Result {
+        LINKED,
+        FAILED,
+        UNSUPPORTED
+    }
+
+    private final TransferTask.CopyMode mode;
+    private final Set<FileStore> unsupported = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param mode How files are duplicated
+     */
+    FileLinker(TransferTask.CopyMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return {@code true} if this links files, rather than always leaving them to be copied
+     */
+    boolean isEnabled() {
+        return mode == TransferTask.CopyMode.HARD_LINK
+                || mode == TransferTask.CopyMode.REFLINK && REFLINK_COMMAND != null;
+    }
+
+    /**
+     * Try to duplicate a file without copying its bytes, replacing the destination if it exists.
+     *
+     * @param entry File to duplicate
+     * @param to    Destination, on the same device
+     * @param store Device of the file and its destination
+     *
+     * @return {@code true} if the file has been duplicated, {@code false} if it must be copied instead
+     *
+     * @throws IOException If the existing destination cannot be replaced
+     */
+    boolean link(FileManifest.Entry entry, Path to, FileStore store) throws IOException {
+        Path from = entry.path();
+        if (!isEnabled() || unsupported.contains(store) || Files.isSymbolicLink(from)
+                || Files.isDirectory(to, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        if (mode == TransferTask.CopyMode.REFLINK && entry.size() < REFLINK_MIN_SIZE) {
+            return false;
+        }
+        if (Files.exists(to) && Files.isSameFile(from, to)) {
+            return true;
+        }
+
+        Result result = mode == TransferTask.CopyMode.HARD_LINK ? hardLink(from, to) : reflink(from, to);
+        if (result == Result.UNSUPPORTED) {
+            unsupported.add(store);
+        }
+        return result == Result.LINKED;
+    }
+
+    private static Result hardLink(Path from, Path to) throws IOException {
+        Files.deleteIfExists(to);
+        try {
+            Files.createLink(to, from);
+            return Result.LINKED;
+        } catch (UnsupportedOperationException | IOException e) {
+            return Result.UNSUPPORTED;
+        }
+    }
+
+    private static Result reflink(Path from, Path to) throws IOException {
+        // Replace the destination, cp would rewrite it in place (along with its other hard links)
+        Files.deleteIfExists(to);
+
+        String[] command = new String[REFLINK_COMMAND.length + 2];
+        System.arraycopy(REFLINK_COMMAND, 0, command, 0, REFLINK_COMMAND.length);
+        command[command.length - 2] = from.toString();
+        command[command.length - 1] = to.toString();
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        // Untranslated messages, to tell an unsupported device apart from other failures
+        builder.environment().put("LC_ALL", "C");
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            // No cp command
+            return Result.UNSUPPORTED;
+        }
+        String output;
+        try {
+            output = readOutput(process.getInputStream());
+            if (process.waitFor() == 0) {
+                return Result.LINKED;
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while cloning " + from);
+        }
+
+        // cp may leave an empty destination behind
+        Files.deleteIfExists(to);
+
+        String error = output.toLowerCase(Locale.ROOT);
+        return REFLINK_UNSUPPORTED.stream().anyMatch(error::contains) ? Result.UNSUPPORTED : Result.FAILED;
+    }
+
+    private static String readOutput(InputStream in) throws IOException {
+        try (InputStream output = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = output.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString();
+        }
+    }
+
+    private static String[] reflinkCommand() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.contains("linux")) {
+            return new String[]{"cp", "--reflink=always", "--"};
+        } else if (os.contains("mac")) {
+            return new String[]{"cp", "-c", "--"};
+        }
+        return null;
+    }
+}
@@ -0,0 +1,394 @@
+package com.wx.fx.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * List of all the files and directories found under a set of sources, along with their size.
+ * <p>
+ * The manifest is built in a single pass, so that the attributes of every file are read only once. Directories are
+ * listed in parallel by a fork/join pool. The entries are listed in pre-order: a directory always comes before its
+ * content.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class FileManifest {
+
+    /**
+     * A file or directory of the manifest.
+     */
+    static class Entry {
+
+        private final Path path;
+        private final Path relativePath;
+        private final long size;
+        private final long lastModified;
+        private final boolean isDirectory;
+        private final boolean isRoot;
+
+        Entry(Path path, Path relativePath, long size, long lastModified, boolean isDirectory, boolean isRoot) {
+            this.path = path;
+            this.relativePath = relativePath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.isDirectory = isDirectory;
+            this.isRoot = isRoot;
+        }
+
+        /**
+         * @return Path of this entry
+         */
+        Path path() {
+            return path;
+        }
+
+        /**
+         * @return Path of this entry relative to the parent of its source (ie: starting with the source name)
+         */
+        Path relativePath() {
+            return relativePath;
+        }
+
+        /**
+         * @return Size of this entry in bytes ({@code 0} for directories)
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * @return Last modification time of this entry in milliseconds
+         */
+        long lastModified() {
+            return lastModified;
+        }
+
+        boolean isDirectory() {
+            return isDirectory;
+        }
+
+        /**
+         * @return {@code true} if this entry is one of the sources the manifest was built from
+         */
+        boolean isRoot() {
+            return isRoot;
+        }
+
+        /**
+         * Get the location of this entry when transferred to the given destination. A single file transferred to a
+         * destination that is not a directory is transferred as the destination itself.
+         *
+         * @param destination Destination of the transfer
+         *
+         * @return Location of this entry in the destination
+         */
+        File target(File destination) {
+            if (isRoot && !isDirectory && !destination.isDirectory()) {
+                return destination;
+            }
+            return new File(destination, relativePath.toString());
+        }
+
+        /**
+         * @return Name of this entry in a ZIP archive: its relative path with '/' separators (and a trailing '/' for
+         * directories)
+         */
+        String zipName() {
+            StringBuilder name = new StringBuilder();
+            for (Path part : relativePath) {
+                if (name.length() > 0) {
+                    name.append('/');
+                }
+                name.append(part);
+            }
+            if (isDirectory) {
+                name.append('/');
+            }
+            return name.toString();
+        }
+
+        @Override
+        public String toString() {
+            return path.toString();
+        }
+    }
+
+    private static ForkJoinPool scanPool;
+
+    private final List<Entry> entries;
+    private final long totalSize;
+    private Map<File, Long> sizes;
+
+    private FileManifest(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.totalSize = entries.stream().mapToLong(Entry::size).sum();
+    }
+
+    /**
+     * Scan the given sources and wait for the result.
+     *
+     * @param sources     Files or directories to scan
+     * @param followLinks Whether symbolic links to directories should be followed or treated as files
+     *
+     * @return The manifest of the sources
+     *
+     * @throws IOException If a source is missing or can't be read
+     */
+    static FileManifest scan(File[] sources, boolean followLinks) throws IOException {
+        return await(scanAsync(sources, followLinks, () -> false));
+    }
+
+    /**
+     * Start scanning the given sources in the background. Each directory is listed by its own fork/join subtask, so
+     * that large trees are scanned by several threads.
+     *
+     * @param sources     Files or directories to scan
+     * @param followLinks Whether symbolic links to directories should be followed or treated as files
+     * @param cancelled   Checked before listing each directory, aborts the scan when {@code true}
+     *
+     * @return The pending scan, to pass to {@link #await(Future)}
+     */
+    static Future<FileManifest> scanAsync(File[] sources, boolean followLinks, BooleanSupplier cancelled) {
+        LinkOption[] linkOptions = followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+
+        return scanPool().submit(() -> {
+            List<SourceScan> scans = new ArrayList<>(sources.length);
+            for (File source : sources) {
+                Path root = source.toPath();
+                scans.add(new SourceScan(root, Paths.get(source.getName()), linkOptions, cancelled));
+            }
+            ForkJoinTask.invokeAll(scans);
+
+            List<Entry> entries = new ArrayList<>();
+            for (SourceScan scan : scans) {
+                scan.join().flatten(entries);
+            }
+            return new FileManifest(entries);
+        });
+    }
+
+    /**
+     * Wait for a scan started with {@link #scanAsync(File[], boolean, BooleanSupplier)}.
+     *
+     * @param scan Pending scan
+     *
+     * @return The manifest of the sources
+     *
+     * @throws IOException If a source is missing or can't be read
+     */
+    static FileManifest await(Future<FileManifest> scan) throws IOException {
+        try {
+            return scan.get();
+        } catch (InterruptedException e) {
+            scan.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static synchronized ForkJoinPool scanPool() {
+        if (scanPool == null) {
+            // Listing directories is I/O bound, allow more threads than cores
+            scanPool = new ForkJoinPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        }
+        return scanPool;
+    }
+
+    /**
+     * Scanned source or directory, its entries are flattened once the whole scan is done.
+     */
+    private static class Subtree {
+        private final Entry entry;
+        private final List<Entry> files = new ArrayList<>();
+        private final List<Subtree> directories = new ArrayList<>();
+
+        private Subtree(Entry entry) {
+            this.entry = entry;
+        }
+
+        private void flatten(List<Entry> entries) {
+            entries.add(entry);
+            entries.addAll(files);
+            for (Subtree directory : directories) {
+                directory.flatten(entries);
+            }
+        }
+    }
+
+    /**
+     * Scans one source: a single file or the root directory.
+     */
+    private static class SourceScan extends RecursiveTask<Subtree> {
+
+        private final Path root;
+        private final Path rootName;
+        private final LinkOption[] linkOptions;
+        private final BooleanSupplier cancelled;
+
+        private SourceScan(Path root, Path rootName, LinkOption[] linkOptions, BooleanSupplier cancelled) {
+            this.root = root;
+            this.rootName = rootName;
+            this.linkOptions = linkOptions;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Subtree compute() {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class, linkOptions);
+                if (attrs.isDirectory()) {
+                    return new DirectoryScan(this, root, attrs, Collections.emptySet()).compute();
+                }
+
+                return new Subtree(entry(root, attrs));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private BasicFileAttributes readAttributes(Path path) throws IOException {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+            } catch (NoSuchFileException e) {
+                // Broken link, keep the link itself
+                return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+        }
+
+        private Entry entry(Path path, BasicFileAttributes attrs) {
+            boolean isDirectory = attrs.isDirectory();
+            return new Entry(path, rootName.resolve(root.relativize(path)), isDirectory ? 0 : attrs.size(),
+                    attrs.lastModifiedTime().toMillis(), isDirectory, path.equals(root));
+        }
+    }
+
+    /**
+     * Scans the content of one directory, forking one subtask per sub-directory.
+     */
+    private static class DirectoryScan extends RecursiveTask<Subtree> {
+
+        private final SourceScan source;
+        private final Path directory;
+        private final BasicFileAttributes attrs;
+        private final Set<Object> ancestors;
+
+        private DirectoryScan(SourceScan source, Path directory, BasicFileAttributes attrs, Set<Object> ancestors) {
+            this.source = source;
+            this.directory = directory;
+            this.attrs = attrs;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected Subtree compute() {
+            if (source.cancelled.getAsBoolean()) {
+                throw new CancellationException("Cancelled");
+            }
+
+            // Keep track of the visited directories to detect cycles when following links
+            Set<Object> visited = ancestors;
+            if (attrs.fileKey() != null) {
+                if (ancestors.contains(attrs.fileKey())) {
+                    throw new UncheckedIOException(new FileSystemLoopException(directory.toString()));
+                }
+                visited = new HashSet<>(ancestors);
+                visited.add(attrs.fileKey());
+            }
+
+            Subtree subtree = new Subtree(source.entry(directory, attrs));
+            List<DirectoryScan> subScans = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    BasicFileAttributes childAttrs = source.readAttributes(child);
+
+                    if (childAttrs.isDirectory()) {
+                        DirectoryScan subScan = new DirectoryScan(source, child, childAttrs, visited);
+                        subScan.fork();
+                        subScans.add(subScan);
+                    } else {
+                        subtree.files.add(source.entry(child, childAttrs));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (DirectoryScan subScan : subScans) {
+                subtree.directories.add(subScan.join());
+            }
+
+            return subtree;
+        }
+    }
+
+    /**
+     * @return All entries of this manifest, a directory always comes before its content
+     */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * @return Total size of the files of this manifest
+     */
+    long totalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Get the size of a file of this manifest without accessing the file system.
+     *
+     * @param file File to look for
+     *
+     * @return The size recorded in this manifest, or the current size of the file if it is not part of it
+     */
+    synchronized long sizeOf(File file) {
+        if (sizes == null) {
+            sizes = new HashMap<>();
+            for (Entry entry : entries) {
+                sizes.put(entry.path.toFile(), entry.size);
+            }
+        }
+
+        Long size = sizes.get(file);
+        return size != null ? size : file.length();
+    }
+}
@@ -0,0 +1,272 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded pool of workers used to execute file operations in parallel.
+ * <p>
+ * The workers do not own their threads, they run on a shared executor until the pool is closed (see {@link
+ * TransferExecutors#getWorkerExecutor()}).
+ * <p>
+ * The number of queued jobs is bounded as well, so that walking a huge tree does not fill the memory with pending
+ * jobs: {@link #submit(IOJob)} blocks until a slot is available. The first failure of a job is kept and re-thrown by
+ * the next call to {@link #submit(IOJob)} or {@link #await()}, any remaining job is then skipped.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class FileWorkerPool implements AutoCloseable {
+
+    private static final int QUEUED_JOBS_PER_THREAD = 4;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    /**
+     * A file operation to execute in the pool.
+     */
+    @FunctionalInterface
+    interface IOJob {
+        void run() throws IOException;
+    }
+
+    /**
+     * A file operation that produces a result.
+     */
+    @FunctionalInterface
+    interface IOTask<T> {
+        T call() throws IOException;
+    }
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final Set<Thread> workers = new HashSet<>();
+    private final Semaphore slots;
+    private final int slotsCount;
+    private final Runnable cancelledCheck;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private boolean closed;
+
+    /**
+     * Build a pool of workers running on the shared worker executor.
+     *
+     * @param threads        Number of workers
+     * @param cancelledCheck Check that throws if the operation has been cancelled
+     */
+    FileWorkerPool(int threads, Runnable cancelledCheck) {
+        this(threads, cancelledCheck, TransferExecutors.getWorkerExecutor());
+    }
+
+    /**
+     * Build a pool of workers.
+     *
+     * @param threads        Number of workers
+     * @param cancelledCheck Check that throws if the operation has been cancelled
+     * @param executor       Executor running the workers
+     */
+    FileWorkerPool(int threads, Runnable cancelledCheck, Executor executor) {
+        this.slotsCount = threads * QUEUED_JOBS_PER_THREAD;
+        this.slots = new Semaphore(slotsCount);
+        this.cancelledCheck = cancelledCheck;
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Submit a job to the pool. This blocks until the number of pending jobs is below the bound.
+     *
+     * @param job Job to execute
+     *
+     * @throws IOException If a previous job failed
+     */
+    void submit(IOJob job) throws IOException {
+        acquire(1);
+
+        queue.add(() -> {
+            try {
+                if (failure.get() == null) {
+                    job.run();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Submit a job that produces a result. This blocks until the number of pending jobs is below the bound. A failure
+     * of this job is reported by {@link #result(Future)} only.
+     *
+     * @param task Job to execute
+     * @param <T>  Type of the result
+     *
+     * @return The pending result, to pass to {@link #result(Future)}
+     *
+     * @throws IOException If a previous job failed
+     */
+    <T> Future<T> compute(IOTask<T> task) throws IOException {
+        acquire(1);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        queue.add(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                slots.release();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Wait for the result of a job submitted with {@link #compute(IOTask)}.
+     *
+     * @param result Pending result
+     * @param <T>    Type of the result
+     *
+     * @return The result of the job
+     *
+     * @throws IOException If the job failed
+     */
+    <T> T result(Future<T> result) throws IOException {
+        try {
+            while (true) {
+                try {
+                    return result.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    cancelledCheck.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelledCheck.run();
+            throw new InterruptedIOException("Interrupted while waiting for workers");
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+            rethrowFailure();
+            throw new AssertionError();
+        }
+    }
+
+    /**
+     * Wait until all submitted jobs are done.
+     *
+     * @throws IOException If any of the jobs failed
+     */
+    void await() throws IOException {
+        acquire(slotsCount);
+        slots.release(slotsCount);
+    }
+
+    private void acquire(int permits) throws IOException {
+        try {
+            while (!slots.tryAcquire(permits, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                cancelledCheck.run();
+                rethrowFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelledCheck.run();
+            throw new InterruptedIOException("Interrupted while waiting for workers");
+        }
+
+        try {
+            cancelledCheck.run();
+            rethrowFailure();
+        } catch (IOException | RuntimeException | Error e) {
+            slots.release(permits);
+            throw e;
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable ex = failure.get();
+        if (ex instanceof IOException) {
+            throw (IOException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void work() {
+        Thread current = Thread.currentThread();
+        synchronized (workers) {
+            if (closed) {
+                return;
+            }
+            workers.add(current);
+        }
+
+        try {
+            while (true) {
+                synchronized (workers) {
+                    if (closed) {
+                        return;
+                    }
+                }
+
+                try {
+                    queue.take().run();
+                } catch (InterruptedException e) {
+                    // Closed, or interrupted by a cancelled job
+                }
+            }
+        } finally {
+            synchronized (workers) {
+                workers.remove(current);
+                // The thread goes back to the executor, the interruption from close() must not leak to its next job
+                Thread.interrupted();
+                workers.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stop the workers, interrupting the running jobs and discarding the pending ones. This waits until the running
+     * jobs are done, the threads are then given back to the executor.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        synchronized (workers) {
+            closed = true;
+            queue.clear();
+            workers.forEach(Thread::interrupt);
+
+            // Workers that have not started yet exit as soon as they run
+            while (!workers.isEmpty()) {
+                try {
+                    workers.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
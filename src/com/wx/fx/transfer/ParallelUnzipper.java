@@ -0,0 +1,164 @@
+package com.wx.fx.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts ZIP archives by reading their central directory and extracting the entries concurrently on a {@link
+ * FileWorkerPool}. Several archives can be extracted at the same time.
+ * <p>
+ * The whole directory structure is created before any file is extracted.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class ParallelUnzipper {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Listener notified after each extracted file.
+     */
+    @FunctionalInterface
+    interface FileListener {
+
+        /**
+         * Called once a file has been completely extracted. Throwing aborts the extraction.
+         *
+         * @param file Extracted file
+         *
+         * @throws IOException To abort the extraction
+         */
+        void extracted(Path file) throws IOException;
+    }
+
+    private final FileWorkerPool pool;
+    private final StoreScheduler.Lane lane;
+
+    /**
+     * @param pool Pool extracting the entries
+     * @param lane Devices written by the extraction
+     */
+    ParallelUnzipper(FileWorkerPool pool, StoreScheduler.Lane lane) {
+        this.pool = pool;
+        this.lane = lane;
+    }
+
+    /**
+     * Compute the total uncompressed size of the given archives from their central directory, without reading any of
+     * their entries.
+     *
+     * @param archives Archives to read
+     *
+     * @return The total size of the entries of the archives
+     *
+     * @throws IOException If an archive cannot be read
+     */
+    static long uncompressedSize(File[] archives) throws IOException {
+        long size = 0;
+        for (File archive : archives) {
+            try (ZipFile zip = new ZipFile(archive)) {
+                size += zip.stream().mapToLong(e -> Math.max(0, e.getSize())).sum();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Extract all the given archives in the target directory.
+     *
+     * @param archives  Archives to extract
+     * @param target    Directory in which to extract the archives
+     * @param listener  Notified after each block of extracted bytes
+     * @param extracted Notified after each extracted file
+     *
+     * @throws IOException If an archive cannot be read or extracted
+     */
+    void unzip(File[] archives, File target, ChannelCopier.ChunkListener listener, FileListener extracted)
+            throws IOException {
+        Path root = target.toPath().toAbsolutePath().normalize();
+        List<ZipFile> zips = new ArrayList<>(archives.length);
+
+        try {
+            for (File archive : archives) {
+                zips.add(new ZipFile(archive));
+            }
+
+            Set<Path> directories = new LinkedHashSet<>();
+            directories.add(root);
+            for (ZipFile zip : zips) {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    Path path = resolve(root, entry);
+                    directories.add(entry.isDirectory() ? path : path.getParent());
+                }
+            }
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            for (ZipFile zip : zips) {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        Path path = resolve(root, entry);
+                        pool.submit(() -> {
+                            StoreScheduler.Permit permit = lane.acquire();
+                            try {
+                                extract(zip, entry, path, listener);
+                            } finally {
+                                permit.close();
+                            }
+                            extracted.extracted(path);
+                        });
+                    }
+                }
+            }
+
+            pool.await();
+        } finally {
+            for (ZipFile zip : zips) {
+                zip.close();
+            }
+        }
+    }
+
+    private static Path resolve(Path root, ZipEntry entry) throws IOException {
+        Path path = root.resolve(entry.getName()).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("Invalid archive entry, outside of the target directory: " + entry.getName());
+        }
+        return path;
+    }
+
+    private static void extract(ZipFile zip, ZipEntry entry, Path path, ChannelCopier.ChunkListener listener)
+            throws IOException {
+        try (InputStream in = zip.getInputStream(entry);
+             OutputStream out = Files.newOutputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                listener.transferred(read);
+            }
+        }
+
+        if (entry.getTime() != -1) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(entry.getTime()));
+        }
+    }
+}
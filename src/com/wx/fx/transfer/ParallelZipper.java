@@ -0,0 +1,228 @@
+package com.wx.fx.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Builds a ZIP archive by compressing its entries in parallel on a {@link FileWorkerPool}, the compressed entries are
+ * then written to the archive in order by the calling thread.
+ * <p>
+ * Only a bounded window of entries is compressed ahead of the writer, holding at most {@link #MAX_BUFFERED_BYTES}
+ * bytes of files in memory. Entries larger than {@link #IN_MEMORY_LIMIT} are not buffered but compressed by the writer
+ * thread itself.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class ParallelZipper {
+
+    static final long IN_MEMORY_LIMIT = 16L * 1024 * 1024;
+    static final long MAX_BUFFERED_BYTES = 32L * 1024 * 1024;
+
+    private static final int WINDOW_PER_THREAD = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<String> COMPRESSED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "zip", "jar", "gz", "tgz", "bz2", "xz", "7z", "rar",
+            "jpg", "jpeg", "png", "gif", "webp",
+            "mp3", "m4a", "aac", "ogg", "flac",
+            "mp4", "m4v", "mkv", "avi", "mov", "webm"
+    )));
+
+    /**
+     * Matches the files that are already compressed (archives, images, audio and video) and are better stored as is.
+     */
+    static final Predicate<File> ALREADY_COMPRESSED = file -> {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    };
+
+    /**
+     * Progress listener of the archive.
+     */
+    @FunctionalInterface
+    interface Listener {
+
+        /**
+         * Called after each written entry (and after each block of the large ones). Throwing aborts the archive.
+         *
+         * @param bytes       Number of source bytes processed since the last call
+         * @param archiveSize Number of bytes written to the archive so far
+         *
+         * @throws IOException To abort
+         */
+        void progress(long bytes, long archiveSize) throws IOException;
+
+        /**
+         * Called once an entry has been completely written to the archive.
+         *
+         * @param entry Written entry
+         *
+         * @throws IOException To abort
+         */
+        default void written(FileManifest.Entry entry) throws IOException {
+        }
+    }
+
+    private static class Compressed {
+        private final int method;
+        private final byte[] data;
+        private final long crc;
+        private final long size;
+
+        private Compressed(int method, byte[] data, long crc, long size) {
+            this.method = method;
+            this.data = data;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    private static class Pending {
+        private final FileManifest.Entry entry;
+        private final Future<Compressed> compressed;
+
+        private Pending(FileManifest.Entry entry, Future<Compressed> compressed) {
+            this.entry = entry;
+            this.compressed = compressed;
+        }
+    }
+
+    private final FileWorkerPool pool;
+    private final int window;
+    private final Predicate<File> stored;
+    private final Runnable cancelledCheck;
+
+    /**
+     * @param pool           Pool compressing the entries
+     * @param threads        Number of threads of the pool
+     * @param stored         Matches the files that must be stored rather than deflated
+     * @param cancelledCheck Check that throws if the operation has been cancelled
+     */
+    ParallelZipper(FileWorkerPool pool, int threads, Predicate<File> stored, Runnable cancelledCheck) {
+        this.pool = pool;
+        this.window = threads * WINDOW_PER_THREAD;
+        this.stored = stored;
+        this.cancelledCheck = cancelledCheck;
+    }
+
+    /**
+     * Create the archive. If it fails, the incomplete archive is deleted.
+     *
+     * @param entries  Entries to add to the archive
+     * @param target   Location of the archive
+     * @param listener Progress listener
+     *
+     * @throws IOException If the archive cannot be created
+     */
+    void zip(List<FileManifest.Entry> entries, File target, Listener listener) throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(target.toPath());
+        boolean completed = false;
+        try {
+            Deque<Pending> pending = new ArrayDeque<>();
+            Iterator<FileManifest.Entry> iterator = entries.iterator();
+            FileManifest.Entry next = iterator.hasNext() ? iterator.next() : null;
+            long buffered = 0;
+
+            while (next != null || !pending.isEmpty()) {
+                while (next != null && pending.size() < window) {
+                    FileManifest.Entry entry = next;
+                    boolean inMemory = !entry.isDirectory() && entry.size() <= IN_MEMORY_LIMIT;
+                    if (inMemory && !pending.isEmpty() && buffered + entry.size() > MAX_BUFFERED_BYTES) {
+                        // The files read ahead would take too much memory, wait for the writer
+                        break;
+                    }
+
+                    pending.add(new Pending(entry, inMemory ? pool.compute(() -> compress(entry)) : null));
+                    buffered += inMemory ? entry.size() : 0;
+                    next = iterator.hasNext() ? iterator.next() : null;
+                }
+
+                cancelledCheck.run();
+                Pending written = pending.poll();
+                write(writer, written, listener);
+                buffered -= written.compressed != null ? written.entry.size() : 0;
+            }
+
+            writer.close();
+            completed = true;
+        } finally {
+            if (!completed) {
+                writer.abort();
+                Files.deleteIfExists(target.toPath());
+            }
+        }
+    }
+
+    private void write(ZipArchiveWriter writer, Pending pending, Listener listener) throws IOException {
+        FileManifest.Entry entry = pending.entry;
+
+        if (entry.isDirectory()) {
+            writer.writeDirectory(entry.zipName(), entry.lastModified());
+            listener.progress(0, writer.size());
+
+        } else if (pending.compressed == null) {
+            writer.writeStreamed(entry.zipName(), method(entry), entry.lastModified(), entry.path(), entry.size(),
+                    bytes -> listener.progress(bytes, writer.size()));
+
+        } else {
+            Compressed compressed = pool.result(pending.compressed);
+            writer.writeEntry(entry.zipName(), compressed.method, entry.lastModified(), compressed.data,
+                    compressed.data.length, compressed.crc, compressed.size);
+            listener.progress(compressed.size, writer.size());
+        }
+        listener.written(entry);
+    }
+
+    private int method(FileManifest.Entry entry) {
+        return stored.test(entry.path().toFile()) ? ZipEntry.STORED : ZipEntry.DEFLATED;
+    }
+
+    private Compressed compress(FileManifest.Entry entry) throws IOException {
+        cancelledCheck.run();
+
+        byte[] data = Files.readAllBytes(entry.path());
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        int method = method(entry);
+        if (method == ZipEntry.STORED) {
+            return new Compressed(method, data, crc.getValue(), data.length);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(BUFFER_SIZE, data.length / 2));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+
+            return new Compressed(method, out.toByteArray(), crc.getValue(), data.length);
+        } finally {
+            deflater.end();
+        }
+    }
+}
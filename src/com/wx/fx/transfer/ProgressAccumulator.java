@@ -0,0 +1,99 @@
+package com.wx.fx.transfer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Accumulates the progress reported by any number of threads without locking, and publishes it at a bounded rate.
+ * <p>
+ * Publishing the progress of a {@link javafx.concurrent.Task} schedules work on the FX thread, doing so for every file
+ * of a tree of small files floods the FX event queue. Instead, the progress is published at most once per interval,
+ * plus a final time through {@link #flush()}.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class ProgressAccumulator {
+
+    static final long DEFAULT_INTERVAL_MS = 33;
+
+    /**
+     * Lock-free gate that opens at most once per interval.
+     */
+    static class Throttle {
+        private final long intervalNanos;
+        private final AtomicLong next;
+
+        /**
+         * @param intervalMs Minimum time between two openings, in milliseconds
+         */
+        Throttle(long intervalMs) {
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+            this.next = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * @return {@code true} if the interval has elapsed since the last time this returned {@code true}, only one of
+         * the concurrent callers gets {@code true}
+         */
+        boolean ready() {
+            long now = System.nanoTime();
+            long expected = next.get();
+            return now - expected >= 0 && next.compareAndSet(expected, now + intervalNanos);
+        }
+    }
+
+    private final DoubleAdder progress = new DoubleAdder();
+    private final Throttle throttle;
+    private final DoubleConsumer publisher;
+
+    /**
+     * @param intervalMs Minimum time between two publications, in milliseconds
+     * @param publisher  Publishes the accumulated progress
+     */
+    ProgressAccumulator(long intervalMs, DoubleConsumer publisher) {
+        this.throttle = new Throttle(intervalMs);
+        this.publisher = publisher;
+    }
+
+    /**
+     * Add some progress, this is published if the interval has elapsed since the last publication.
+     *
+     * @param amount Progress to add
+     */
+    void add(double amount) {
+        progress.add(amount);
+        if (throttle.ready()) {
+            publisher.accept(progress.sum());
+        }
+    }
+
+    /**
+     * Set the progress and publish it. This must not be called while other threads are adding progress.
+     *
+     * @param value New progress
+     */
+    void set(double value) {
+        progress.reset();
+        progress.add(value);
+        flush();
+    }
+
+    /**
+     * Publish the current progress, whatever the time elapsed since the last publication.
+     */
+    void flush() {
+        publisher.accept(progress.sum());
+    }
+
+    /**
+     * @return The current progress
+     */
+    double get() {
+        return progress.sum();
+    }
+}
@@ -0,0 +1,208 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Executes steps that depend on each other, each step starting as soon as all its dependencies are done. Steps without
+ * any dependency between them therefore run concurrently.
+ * <p>
+ * The calling thread runs the steps itself, one at a time. When several steps are ready at once, helpers are submitted
+ * to an executor (the task executor of {@link TransferExecutors} by default) to run the others. A helper that starts
+ * once there is nothing left to run simply returns, so the steps never wait for a thread of the executor.
+ * <p>
+ * The first failure of a step is kept and re-thrown once all the running steps are done, the steps that have not
+ * started yet are skipped. Running steps are expected to abort by themselves once {@link #isFailed()} is {@code true}.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class StepScheduler<T> {
+
+    /**
+     * A step to execute.
+     */
+    @FunctionalInterface
+    interface StepJob<T> {
+        void run(T step) throws IOException;
+    }
+
+    private final Executor executor;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Guarded by this
+    private final Queue<T> ready = new ArrayDeque<>();
+    private final Map<T, Integer> waiting = new HashMap<>();
+    private final Map<T, List<T>> dependents = new HashMap<>();
+    private final Set<Thread> running = new HashSet<>();
+    private StepJob<T> job;
+    private int pendingHelpers;
+
+    /**
+     * Build a scheduler running its concurrent steps on the shared task executor.
+     */
+    StepScheduler() {
+        this(TransferExecutors.getTaskExecutor());
+    }
+
+    /**
+     * @param executor Executor running the steps that are ready while the calling thread is busy
+     */
+    StepScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return {@code true} if a step has failed
+     */
+    boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    /**
+     * Execute all the steps and wait until they are done. If the calling thread is interrupted, the running steps are
+     * interrupted as well, but this still waits for them to be done.
+     *
+     * @param steps        Steps to execute, a step must come after all its dependencies
+     * @param dependencies Dependencies of a step
+     * @param job          Executes a step
+     *
+     * @throws IOException If a step failed
+     */
+    void execute(List<T> steps, Function<T, Collection<T>> dependencies, StepJob<T> job) throws IOException {
+        synchronized (this) {
+            this.job = job;
+            for (T step : steps) {
+                Collection<T> required = dependencies.apply(step);
+                for (T dependency : required) {
+                    dependents.computeIfAbsent(dependency, d -> new ArrayList<>()).add(step);
+                }
+                waiting.put(step, required.size());
+                if (required.isEmpty()) {
+                    ready.add(step);
+                }
+            }
+        }
+        startHelpers();
+
+        T step;
+        while ((step = next(true)) != null) {
+            run(step, job);
+        }
+
+        rethrowFailure();
+    }
+
+    private void help() {
+        StepJob<T> job;
+        synchronized (this) {
+            pendingHelpers--;
+            job = this.job;
+        }
+
+        T step;
+        while ((step = next(false)) != null) {
+            run(step, job);
+        }
+        // The thread goes back to the executor, an interruption that came too late must not leak to its next job
+        Thread.interrupted();
+    }
+
+    /**
+     * Take the next step to run.
+     *
+     * @param caller {@code true} for the calling thread, which waits for the running steps before returning
+     *
+     * @return The step, or {@code null} if there is nothing left to run
+     */
+    private synchronized T next(boolean caller) {
+        while (true) {
+            T step = isFailed() ? null : ready.poll();
+            if (step != null) {
+                running.add(Thread.currentThread());
+                return step;
+            }
+            if (!caller || running.isEmpty()) {
+                return null;
+            }
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Cancelled, the steps must still be done before returning
+                running.forEach(Thread::interrupt);
+            }
+        }
+    }
+
+    private void run(T step, StepJob<T> job) {
+        try {
+            job.run(step);
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            done(step);
+        }
+        startHelpers();
+    }
+
+    private synchronized void done(T step) {
+        running.remove(Thread.currentThread());
+        for (T dependent : dependents.getOrDefault(step, Collections.emptyList())) {
+            int remaining = waiting.merge(dependent, -1, Integer::sum);
+            if (remaining == 0) {
+                ready.add(dependent);
+            }
+        }
+        notifyAll();
+    }
+
+    private void startHelpers() {
+        int helpers;
+        synchronized (this) {
+            // The current thread (or the waiting calling thread) takes one of the ready steps
+            helpers = isFailed() ? 0 : Math.max(0, ready.size() - 1 - pendingHelpers);
+            pendingHelpers += helpers;
+        }
+
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(this::help);
+            } catch (RejectedExecutionException e) {
+                // The calling thread runs the steps once it is free
+                synchronized (this) {
+                    pendingHelpers -= helpers - i;
+                }
+                return;
+            }
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable ex = failure.get();
+        if (ex instanceof IOException) {
+            throw (IOException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new IOException(ex);
+        }
+    }
+}
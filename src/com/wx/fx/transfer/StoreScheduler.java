@@ -0,0 +1,229 @@
+package com.wx.fx.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of files accessed at the same time on each device ({@link FileStore}), across all the running
+ * actions of a task.
+ * <p>
+ * Solid-state drives benefit from many concurrent accesses, whereas spinning disks and removable media slow down when
+ * accessed concurrently. By default, removable media (FAT, exFAT, ...) and disks reported as rotational by Linux are
+ * accessed by one thread at a time, other devices are not limited. These defaults can be overridden per device.
+ * <p>
+ * A job accessing several devices takes their permits in a global order, so that two jobs can never wait for each
+ * other.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class StoreScheduler {
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int SEQUENTIAL = 1;
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final Set<String> REMOVABLE_TYPES = new HashSet<>(Arrays.asList(
+            "vfat", "msdos", "fat", "fat32", "exfat", "udf", "iso9660", "hfs"));
+
+    /**
+     * Permits taken on some devices, released by {@link #close()}.
+     */
+    interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NO_PERMIT = () -> {
+    };
+
+    private static class Store {
+        private final int order;
+        private final Semaphore permits;
+
+        private Store(int order, int limit) {
+            this.order = order;
+            this.permits = limit == UNLIMITED ? null : new Semaphore(limit);
+        }
+    }
+
+    /**
+     * Devices accessed by a job.
+     */
+    class Lane {
+        private final Store[] stores;
+        private final Runnable cancelledCheck;
+
+        private Lane(Store[] stores, Runnable cancelledCheck) {
+            this.stores = stores;
+            this.cancelledCheck = cancelledCheck;
+        }
+
+        /**
+         * Take a permit on each device of this lane, waiting until they are available.
+         *
+         * @return The permits, to close once the devices are not accessed anymore
+         *
+         * @throws IOException If the thread is interrupted while waiting
+         */
+        Permit acquire() throws IOException {
+            if (stores.length == 0) {
+                return NO_PERMIT;
+            }
+
+            int acquired = 0;
+            try {
+                for (; acquired < stores.length; acquired++) {
+                    while (!stores[acquired].permits.tryAcquire(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                        cancelledCheck.run();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a device");
+            } finally {
+                if (acquired < stores.length) {
+                    release(acquired);
+                }
+            }
+
+            return () -> release(stores.length);
+        }
+
+        private void release(int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                stores[i].permits.release();
+            }
+        }
+    }
+
+    private final Map<FileStore, Integer> overrides;
+    private final Map<FileStore, Store> stores = new HashMap<>();
+
+    /**
+     * Build a scheduler with the default limits only.
+     */
+    StoreScheduler() {
+        this.overrides = new HashMap<>();
+    }
+
+    /**
+     * @param overrides Maximum number of concurrent accesses of the devices of some files, replacing the defaults
+     *
+     * @throws IOException If the device of an overridden file cannot be found
+     */
+    StoreScheduler(Map<File, Integer> overrides) throws IOException {
+        this.overrides = new HashMap<>();
+        for (Map.Entry<File, Integer> override : overrides.entrySet()) {
+            this.overrides.put(fileStore(override.getKey().toPath()), override.getValue());
+        }
+    }
+
+    /**
+     * Build the lane of a job accessing the given files. Files are expected to be on the same device as the rest of
+     * their tree, so a lane is usually built once per source and reused for all its files.
+     *
+     * @param cancelledCheck Called while waiting for a permit, throws to abort
+     * @param paths          Files accessed, the nearest existing parent is used for files that do not exist yet
+     *
+     * @return The lane
+     *
+     * @throws IOException If the device of a file cannot be found
+     */
+    Lane lane(Runnable cancelledCheck, Path... paths) throws IOException {
+        Set<Store> limited = new HashSet<>();
+        for (Path path : paths) {
+            Store store = store(fileStore(path));
+            if (store.permits != null) {
+                limited.add(store);
+            }
+        }
+
+        Store[] sorted = limited.toArray(new Store[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.order, b.order));
+
+        return new Lane(sorted, cancelledCheck);
+    }
+
+    private synchronized Store store(FileStore fileStore) {
+        return stores.computeIfAbsent(fileStore, s -> new Store(stores.size(), limit(s)));
+    }
+
+    private int limit(FileStore store) {
+        Integer override = overrides.get(store);
+        if (override != null) {
+            return override;
+        }
+
+        if (REMOVABLE_TYPES.contains(store.type().toLowerCase(Locale.ROOT)) || isRotational(store)) {
+            return SEQUENTIAL;
+        }
+        return UNLIMITED;
+    }
+
+    private static boolean isRotational(FileStore store) {
+        // Only Linux tells, through the sysfs entry of the block device (or of its parent disk for a partition)
+        String name = store.name();
+        if (!name.startsWith("/dev/")) {
+            return false;
+        }
+
+        try {
+            String deviceName = Paths.get(name).getFileName().toString();
+            if (deviceName.startsWith("vd") || deviceName.startsWith("xvd")) {
+                // Virtual disks are always reported as rotational, whatever the storage behind them
+                return false;
+            }
+
+            Path device = Paths.get("/sys/class/block", deviceName);
+            if (!Files.exists(device)) {
+                return false;
+            }
+            for (Path candidate : Arrays.asList(
+                    device.resolve("queue/rotational"),
+                    device.toRealPath().getParent().resolve("queue/rotational"))) {
+                if (Files.exists(candidate)) {
+                    List<String> lines = Files.readAllLines(candidate);
+                    return !lines.isEmpty() && lines.get(0).trim().equals("1");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unknown device
+        }
+        return false;
+    }
+
+    /**
+     * @param path File that may not exist yet
+     *
+     * @return The device of the file, or of its nearest existing parent
+     *
+     * @throws IOException If the device cannot be found
+     */
+    static FileStore fileStore(Path path) throws IOException {
+        Path existing = path.toAbsolutePath();
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            throw new IOException("No existing parent: " + path);
+        }
+        return Files.getFileStore(existing);
+    }
+}
@@ -0,0 +1,114 @@
+package com.wx.fx.transfer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Checksum computed over a stream of bytes, backed either by a {@link Checksum} (CRC32, CRC32C) or by a {@link
+ * MessageDigest}.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+abstract class StreamChecksum {
+
+    /**
+     * Get a factory of checksums for the given algorithm.
+     *
+     * @param algorithm {@code CRC32}, {@code CRC32C} (if provided by the runtime) or the name of a {@link
+     *                  MessageDigest} algorithm
+     *
+     * @return A factory of checksums
+     *
+     * @throws IllegalArgumentException If the algorithm is not available
+     */
+    static Supplier<StreamChecksum> factory(String algorithm) {
+        if ("CRC32".equalsIgnoreCase(algorithm)) {
+            return () -> new ChecksumAdapter(new CRC32());
+        }
+        if ("CRC32C".equalsIgnoreCase(algorithm)) {
+            Class<? extends Checksum> crc32c;
+            try {
+                crc32c = Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("CRC32C is not provided by this runtime", e);
+            }
+            return () -> {
+                try {
+                    return new ChecksumAdapter(crc32c.getConstructor().newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown checksum algorithm: " + algorithm, e);
+        }
+        return () -> {
+            try {
+                return new DigestAdapter(MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * Add bytes to the checksum.
+     *
+     * @param bytes  Bytes to add
+     * @param offset Offset of the first byte
+     * @param length Number of bytes
+     */
+    abstract void update(byte[] bytes, int offset, int length);
+
+    /**
+     * @return The checksum of all the bytes added so far
+     */
+    abstract byte[] value();
+
+    private static class ChecksumAdapter extends StreamChecksum {
+        private final Checksum checksum;
+
+        private ChecksumAdapter(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        void update(byte[] bytes, int offset, int length) {
+            checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        byte[] value() {
+            long value = checksum.getValue();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+
+    private static class DigestAdapter extends StreamChecksum {
+        private final MessageDigest digest;
+
+        private DigestAdapter(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        void update(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+
+        @Override
+        byte[] value() {
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.wx.fx.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Decides whether a file of a {@link TransferTask.Action#SYNC} action needs to be copied.
+ * <p>
+ * By default, a destination is up to date if it has the same size and modification time as the source. Since some
+ * file systems only store modification times with a 2 seconds precision, smaller differences are ignored. If contents
+ * are compared, files of the same size are compared by their digest instead.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class SyncComparator {
+
+    static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final long TIME_TOLERANCE_MS = 2000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean compareContent;
+
+    /**
+     * @param compareContent Whether the files must be compared by their content rather than their modification time
+     */
+    SyncComparator(boolean compareContent) {
+        this.compareContent = compareContent;
+    }
+
+    /**
+     * @param source File to synchronize
+     * @param target Destination of the file
+     *
+     * @return {@code true} if the destination does not need to be copied again
+     *
+     * @throws IOException If a file cannot be read
+     */
+    boolean isUpToDate(FileManifest.Entry source, Path target) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (!attrs.isRegularFile() || attrs.size() != source.size()) {
+            return false;
+        }
+        if (compareContent) {
+            return Arrays.equals(digest(source.path()), digest(target));
+        }
+        return Math.abs(attrs.lastModifiedTime().toMillis() - source.lastModified()) < TIME_TOLERANCE_MS;
+    }
+
+    private static byte[] digest(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,95 @@
+package com.wx.fx.transfer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the rate at which any number of threads consume permits (bytes or files).
+ * <p>
+ * The bucket holds at most the permits of a fraction of second, so that a transfer resuming after a pause does not
+ * burst. A thread may take more permits than available (eg: a whole chunk), the following threads then wait until the
+ * debt is paid back. The rate can be changed at any time, waiting threads pick up the new rate within {@value
+ * #MAX_WAIT_MS} ms.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class TokenBucket {
+
+    private static final double BURST_SECONDS = 0.25;
+    private static final long MAX_WAIT_MS = 100;
+
+    private final Runnable cancelledCheck;
+    private volatile long rate;
+    private double available;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param rate           Number of permits per second, or {@code 0} for no limit
+     * @param cancelledCheck Called while waiting, throws to abort
+     */
+    TokenBucket(long rate, Runnable cancelledCheck) {
+        this.rate = rate;
+        this.cancelledCheck = cancelledCheck;
+    }
+
+    /**
+     * @return Number of permits per second, or {@code 0} for no limit
+     */
+    long getRate() {
+        return rate;
+    }
+
+    /**
+     * @param rate Number of permits per second, or {@code 0} for no limit
+     */
+    synchronized void setRate(long rate) {
+        refill(System.nanoTime());
+        this.rate = rate;
+        available = Math.min(available, capacity());
+    }
+
+    /**
+     * Take permits, waiting until they are available.
+     *
+     * @param permits Number of permits to take
+     *
+     * @throws InterruptedIOException If the thread is interrupted while waiting
+     */
+    void acquire(long permits) throws InterruptedIOException {
+        while (rate > 0) {
+            long waitMs;
+            synchronized (this) {
+                if (rate <= 0) {
+                    return;
+                }
+                refill(System.nanoTime());
+                if (available >= 0) {
+                    available -= permits;
+                    return;
+                }
+                waitMs = (long) Math.ceil(-available * 1000 / rate);
+            }
+
+            cancelledCheck.run();
+            try {
+                Thread.sleep(Math.max(1, Math.min(waitMs, MAX_WAIT_MS)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private void refill(long now) {
+        double seconds = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRefill = now;
+        available = Math.min(capacity(), available + seconds * rate);
+    }
+
+    private double capacity() {
+        return rate * BURST_SECONDS;
+    }
+}
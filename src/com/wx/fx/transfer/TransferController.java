@@ -5,16 +5,22 @@ import com.wx.fx.gui.window.StageController;
 import com.wx.fx.gui.window.StageInfo;
 import com.wx.fx.gui.window.StageManager;
 import com.wx.fx.util.callback.SimpleCallback;
+import com.wx.util.Format;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.StrokeLineCap;
+import javafx.util.StringConverter;
 
+import java.text.MessageFormat;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created on 13/07/2015
@@ -31,6 +37,7 @@ public class TransferController implements StageController {
     private static final Color LINE_COLOR = Color.color(0, 0, 0, 0.1);
     private static final double LINE_Y_INSETS = 5;
     private static final double LINE_WIDTH = 3;
+    private static final long[] BANDWIDTH_LIMITS = {0, 100L << 20, 10L << 20, 1L << 20};
 
     @FXML
     public Button cancelButton;
@@ -40,12 +47,37 @@ public class TransferController implements StageController {
     private Label statusLabel;
     @FXML
     private Canvas canvas;
+    @FXML
+    private Label statisticsLabel;
+    @FXML
+    private Label fileLabel;
+    @FXML
+    private ChoiceBox<Long> limitChoice;
+    @FXML
+    private ResourceBundle resources;
 
     private TransferTask task;
+    private String progressBarId;
 
     public void initialize() {
+        progressBarId = progressBar.getId();
         canvas.widthProperty().bind(progressBar.widthProperty());
         canvas.heightProperty().bind(progressBar.heightProperty());
+
+        limitChoice.setConverter(new StringConverter<Long>() {
+            @Override
+            public String toString(Long limit) {
+                return limit == null || limit == 0
+                        ? resources.getString("transfer.unlimited")
+                        : Format.formatSize(limit) + "/s";
+            }
+
+            @Override
+            public Long fromString(String string) {
+                // The limits are only picked from the list, never typed
+                return null;
+            }
+        });
     }
 
     @Override
@@ -67,12 +99,18 @@ public class TransferController implements StageController {
     }
 
     public void execute(TransferTask task, SimpleCallback callback) {
-
+        // The stage may be reused from a previous transfer
+        progressBar.setId(progressBarId);
+        cancelButton.setDisable(false);
+        statisticsLabel.setText(null);
+        fileLabel.setText(null);
 
         drawLines(task.getStepsCount());
 
         progressBar.progressProperty().bind(task.progressProperty());
         statusLabel.textProperty().bind(task.messageProperty());
+        task.statisticsProperty().addListener((observable, oldValue, statistics) -> showStatistics(statistics));
+        showLimits(task);
 
         task.setOnFinished(() -> {
             this.task = null;
@@ -87,7 +125,46 @@ public class TransferController implements StageController {
         });
 
         this.task = task;
-        new Thread(task).start();
+        task.awaitDisplay();
+        TransferExecutors.getTaskExecutor().execute(task);
+        // The stage is shown before its arguments are set, this runs once the events showing it have been processed
+        Platform.runLater(task::displayed);
+    }
+
+    private void showLimits(TransferTask task) {
+        limitChoice.setOnAction(null);
+
+        limitChoice.getItems().clear();
+        for (long limit : BANDWIDTH_LIMITS) {
+            limitChoice.getItems().add(limit);
+        }
+        if (!limitChoice.getItems().contains(task.getBandwidthLimit())) {
+            limitChoice.getItems().add(task.getBandwidthLimit());
+        }
+        limitChoice.setValue(task.getBandwidthLimit());
+
+        // The limit of the running task is changed as soon as another one is selected
+        limitChoice.setOnAction(e -> task.setBandwidthLimit(limitChoice.getValue()));
+    }
+
+    private void showStatistics(TransferStatistics statistics) {
+        String eta = statistics.getEtaMillis() < 0
+                ? resources.getString("transfer.eta_unknown")
+                : formatDuration(statistics.getEtaMillis());
+
+        statisticsLabel.setText(MessageFormat.format(resources.getString("transfer.statistics"),
+                Format.formatSize(Math.round(statistics.getBytesPerSecond())),
+                Math.round(statistics.getFilesPerSecond()),
+                eta));
+        fileLabel.setText(statistics.getCurrentFile());
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
     }
 
     private void drawLines(int count) {
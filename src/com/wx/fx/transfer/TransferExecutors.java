@@ -0,0 +1,132 @@
+package com.wx.fx.transfer;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by all the transfers: one runs the {@link TransferTask}s started by {@link TransferController}, the
+ * other runs their per-file jobs.
+ * <p>
+ * On a runtime that provides virtual threads (Java 21+), each task and each worker gets its own virtual thread, so
+ * that any number of transfers can run without one platform thread per task or per file. Otherwise, both executors
+ * are shared pools with a bounded number of platform threads, additional tasks and workers wait for a thread to be
+ * available.
+ * <p>
+ * Both executors can be replaced, for instance to share the threads of an application.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public final class TransferExecutors {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+    private static final int TASK_THREADS = Math.max(4, CPUS);
+    private static final int WORKER_THREADS = Math.max(16, 4 * CPUS);
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final boolean VIRTUAL_THREADS = virtualFactory("probe") != null;
+
+    private static volatile Executor taskExecutor = defaultExecutor("transfer-task-", TASK_THREADS);
+    private static volatile Executor workerExecutor = defaultExecutor("transfer-worker-", WORKER_THREADS);
+
+    private TransferExecutors() {
+    }
+
+    /**
+     * @return {@code true} if the default executors run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * @return The executor running the transfer tasks
+     */
+    public static Executor getTaskExecutor() {
+        return taskExecutor;
+    }
+
+    /**
+     * Replace the executor running the transfer tasks. A task waits most of the time, for its workers or for the
+     * actions running concurrently. A task runs its actions itself, additional threads are only requested from this
+     * executor for the actions that can run at the same time, and the task does not wait for them to start.
+     *
+     * @param executor Executor running the transfer tasks
+     */
+    public static void setTaskExecutor(Executor executor) {
+        taskExecutor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @return The executor running the per-file jobs of the transfer tasks
+     */
+    public static Executor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    /**
+     * Replace the executor running the per-file jobs of the transfer tasks. Each action with a parallelism of {@code
+     * n} (see {@link TransferTask.Builder#setParallelism(int)}) runs {@code n} workers on this executor for its whole
+     * duration, the workers of an action only start once the executor has a thread for them.
+     * <p>
+     * This executor must not run the tasks themselves, a task waiting for its workers would otherwise take the thread
+     * they need.
+     *
+     * @param executor Executor running the workers
+     */
+    public static void setWorkerExecutor(Executor executor) {
+        workerExecutor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @param prefix Prefix of the names of the threads
+     *
+     * @return A factory of virtual threads if the runtime provides them, of platform daemon threads otherwise
+     */
+    static ThreadFactory threadFactory(String prefix) {
+        ThreadFactory virtual = virtualFactory(prefix);
+        if (virtual != null) {
+            return virtual;
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Executor defaultExecutor(String prefix, int threads) {
+        ThreadFactory factory = threadFactory(prefix);
+        if (VIRTUAL_THREADS) {
+            return r -> factory.newThread(r).start();
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory virtualFactory(String prefix) {
+        // Thread.ofVirtual().name(prefix, 1).factory(), through reflection to keep supporting older runtimes
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(name.invoke(builder, prefix, 1L));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.wx.fx.transfer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk journal of a {@link TransferTask}, used to resume a task that failed or has been cancelled.
+ * <p>
+ * The journal records the actions of the task that are completed, the files that have been completely copied (with
+ * their size and modification time) and, for the files being copied, the last offset that has been flushed to the
+ * disk. Records are appended as text lines, a line left incomplete by a crash is ignored when the journal is read.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class TransferJournal implements Closeable {
+
+    private static final String STEP = "S";
+    private static final String FILE = "F";
+    private static final String PARTIAL = "P";
+    private static final String SEPARATOR = "\t";
+
+    private static class FileRecord {
+        private final long size;
+        private final long lastModified;
+        private final long offset;
+
+        private FileRecord(long size, long lastModified, long offset) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.offset = offset;
+        }
+
+        private boolean matches(FileManifest.Entry entry) {
+            return size == entry.size() && lastModified == entry.lastModified();
+        }
+    }
+
+    private final File file;
+    private final Set<Integer> completedSteps = new HashSet<>();
+    private final Map<String, FileRecord> completedFiles = new HashMap<>();
+    private final Map<String, FileRecord> partialFiles = new HashMap<>();
+    private BufferedWriter writer;
+
+    private TransferJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Open a journal, reading the records of a previous run if the file exists.
+     *
+     * @param file Location of the journal
+     *
+     * @return The journal
+     *
+     * @throws IOException If the journal cannot be read or created
+     */
+    static TransferJournal open(File file) throws IOException {
+        TransferJournal journal = new TransferJournal(file);
+        if (file.exists()) {
+            journal.read();
+        }
+        journal.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        return journal;
+    }
+
+    private void read() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    parse(line.split(SEPARATOR, -1));
+                } catch (RuntimeException e) {
+                    // Incomplete record, written while crashing
+                }
+            }
+        }
+    }
+
+    private void parse(String[] fields) {
+        switch (fields[0]) {
+            case STEP:
+                completedSteps.add(Integer.parseInt(fields[1]));
+                break;
+            case FILE:
+                completedFiles.put(key(Integer.parseInt(fields[1]), unescape(fields[5])), new FileRecord(
+                        Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                break;
+            case PARTIAL:
+                partialFiles.put(key(Integer.parseInt(fields[1]), unescape(fields[5])), new FileRecord(
+                        Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                break;
+            default:
+                throw new IllegalArgumentException(fields[0]);
+        }
+    }
+
+    /**
+     * @param step Index of the action in the task
+     *
+     * @return {@code true} if the action has been completed by a previous run
+     */
+    synchronized boolean isStepCompleted(int step) {
+        return completedSteps.contains(step);
+    }
+
+    /**
+     * @param step  Index of the action in the task
+     * @param entry File of the action
+     *
+     * @return {@code true} if the file, unmodified since, has been completely transferred by a previous run
+     */
+    synchronized boolean isFileCompleted(int step, FileManifest.Entry entry) {
+        FileRecord record = completedFiles.get(key(step, entry));
+        return record != null && record.matches(entry);
+    }
+
+    /**
+     * @param step  Index of the action in the task
+     * @param entry File of the action
+     *
+     * @return The number of bytes of the file that a previous run has flushed to the disk, or {@code 0}
+     */
+    synchronized long verifiedOffset(int step, FileManifest.Entry entry) {
+        FileRecord record = partialFiles.get(key(step, entry));
+        return record != null && record.matches(entry) ? record.offset : 0;
+    }
+
+    /**
+     * Record that an action has been completed.
+     *
+     * @param step Index of the action in the task
+     *
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void stepCompleted(int step) throws IOException {
+        completedSteps.add(step);
+        append(STEP + SEPARATOR + step);
+    }
+
+    /**
+     * Record that a file has been completely transferred.
+     *
+     * @param step  Index of the action in the task
+     * @param entry Transferred file
+     *
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void fileCompleted(int step, FileManifest.Entry entry) throws IOException {
+        partialFiles.remove(key(step, entry));
+        append(record(FILE, step, entry, entry.size()));
+    }
+
+    /**
+     * Record that the first bytes of a file have been flushed to the disk.
+     *
+     * @param step   Index of the action in the task
+     * @param entry  File being transferred
+     * @param offset Number of bytes flushed
+     *
+     * @throws IOException If the journal cannot be written
+     */
+    synchronized void filePartial(int step, FileManifest.Entry entry, long offset) throws IOException {
+        append(record(PARTIAL, step, entry, offset));
+    }
+
+    /**
+     * Delete the journal, once the whole task has succeeded.
+     *
+     * @throws IOException If the journal cannot be deleted
+     */
+    synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+    }
+
+    private static String record(String type, int step, FileManifest.Entry entry, long offset) {
+        return type + SEPARATOR + step + SEPARATOR + entry.size() + SEPARATOR + entry.lastModified()
+                + SEPARATOR + offset + SEPARATOR + escape(entry.path().toString());
+    }
+
+    private static String key(int step, FileManifest.Entry entry) {
+        return key(step, entry.path().toString());
+    }
+
+    private static String key(int step, String path) {
+        return step + SEPARATOR + path;
+    }
+
+    private static String escape(String path) {
+        return path.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String path) {
+        StringBuilder result = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) {
+                char next = path.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package com.wx.fx.transfer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of a {@link TransferTask} and produces {@link TransferStatistics} snapshots.
+ * <p>
+ * Counters can be incremented by any thread without locking. Rates are exponentially smoothed each time a snapshot
+ * is taken, weighted by the time elapsed since the previous one, so that they do not depend on how often snapshots
+ * are taken.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class TransferMetrics {
+
+    private static final double SMOOTHING_SECONDS = 3.0;
+
+    /**
+     * Counters of a step.
+     */
+    static class StepMetrics {
+        private final TransferTask.Action action;
+        private final long start = System.nanoTime();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder files = new LongAdder();
+
+        private StepMetrics(TransferTask.Action action) {
+            this.action = action;
+        }
+
+        private TransferStatistics.Step toStep() {
+            return new TransferStatistics.Step(action, millisSince(start), bytes.sum(), files.sum());
+        }
+    }
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final List<StepMetrics> running = new ArrayList<>();
+    private final List<TransferStatistics.Step> steps = new ArrayList<>();
+    private final AtomicLong firstByte = new AtomicLong(-1);
+    private volatile Path currentFile;
+
+    private long start = -1;
+    private long firstStep = -1;
+
+    private long lastSample = -1;
+    private long lastBytes;
+    private long lastFiles;
+    private double lastProgress;
+    private double bytesRate;
+    private double filesRate;
+    private double progressRate;
+
+    /**
+     * Start measuring the elapsed time.
+     */
+    synchronized void start() {
+        start = System.nanoTime();
+    }
+
+    /**
+     * @param action Action of the step that starts
+     *
+     * @return The counters of the step
+     */
+    synchronized StepMetrics stepStarted(TransferTask.Action action) {
+        StepMetrics step = new StepMetrics(action);
+        running.add(step);
+        if (firstStep < 0) {
+            firstStep = step.start;
+        }
+
+        return step;
+    }
+
+    /**
+     * Record the metrics of a step, once it is done.
+     *
+     * @param step Counters of the step
+     */
+    synchronized void stepCompleted(StepMetrics step) {
+        if (running.remove(step)) {
+            steps.add(step.toStep());
+        }
+    }
+
+    /**
+     * @param step  Counters of the step that transferred the bytes
+     * @param count Number of bytes transferred
+     */
+    void bytesTransferred(StepMetrics step, long count) {
+        if (firstByte.get() < 0 && count > 0) {
+            firstByte.compareAndSet(-1, System.nanoTime());
+        }
+        bytes.add(count);
+        step.bytes.add(count);
+    }
+
+    /**
+     * @param step  Counters of the step that processed the files
+     * @param count Number of files processed
+     */
+    void filesProcessed(StepMetrics step, long count) {
+        files.add(count);
+        step.files.add(count);
+    }
+
+    /**
+     * @param file File being processed
+     */
+    void currentFile(Path file) {
+        currentFile = file;
+    }
+
+    /**
+     * Sample the rates and take a snapshot.
+     *
+     * @param progress      Current progress of the task
+     * @param totalProgress Progress of the task once completed
+     *
+     * @return The snapshot
+     */
+    synchronized TransferStatistics snapshot(double progress, double totalProgress) {
+        long now = System.nanoTime();
+        long bytesSum = bytes.sum();
+        long filesSum = files.sum();
+
+        if (lastSample < 0) {
+            lastSample = start >= 0 ? start : now;
+        }
+        double seconds = (now - lastSample) / 1e9;
+        if (seconds > 0) {
+            // The weight of the new sample grows with the time it covers
+            double weight = 1 - Math.exp(-seconds / SMOOTHING_SECONDS);
+            bytesRate += weight * ((bytesSum - lastBytes) / seconds - bytesRate);
+            filesRate += weight * ((filesSum - lastFiles) / seconds - filesRate);
+            progressRate += weight * ((progress - lastProgress) / seconds - progressRate);
+
+            lastSample = now;
+            lastBytes = bytesSum;
+            lastFiles = filesSum;
+            lastProgress = progress;
+        }
+
+        double remaining = Math.max(0, totalProgress - progress);
+        long eta = remaining == 0 ? 0 : progressRate > 0 ? Math.round(remaining / progressRate * 1000) : -1;
+        Path file = currentFile;
+
+        List<TransferStatistics.Step> runningSteps = new ArrayList<>(running.size());
+        for (StepMetrics step : running) {
+            runningSteps.add(step.toStep());
+        }
+
+        return new TransferStatistics(start >= 0 ? millisSince(start) : 0, bytesSum, filesSum, bytesRate, filesRate,
+                eta, file != null ? file.toString() : null, runningSteps, new ArrayList<>(steps),
+                millisFromStart(firstStep), millisFromStart(firstByte.get()));
+    }
+
+    private long millisFromStart(long nanos) {
+        return start >= 0 && nanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(nanos - start) : -1;
+    }
+
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+}
@@ -0,0 +1,204 @@
+package com.wx.fx.transfer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the metrics of a {@link TransferTask}.
+ * <p>
+ * Rates are smoothed over the last few seconds. Comparing the byte rate and the file rate of the steps tells whether a
+ * transfer is limited by the disk bandwidth (high byte rate, few large files), by the metadata operations (high file
+ * rate, many small files) or by the CPU (low byte rate while zipping).
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+public final class TransferStatistics {
+
+    /**
+     * Metrics of a step, so far if it is still running.
+     */
+    public static final class Step {
+        private final TransferTask.Action action;
+        private final long elapsedMillis;
+        private final long bytes;
+        private final long files;
+
+        Step(TransferTask.Action action, long elapsedMillis, long bytes, long files) {
+            this.action = action;
+            this.elapsedMillis = elapsedMillis;
+            this.bytes = bytes;
+            this.files = files;
+        }
+
+        /**
+         * @return The action of this step
+         */
+        public TransferTask.Action getAction() {
+            return action;
+        }
+
+        /**
+         * @return Time spent in this step (including the scan of its sources), in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return Number of bytes transferred by this step
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return Number of files processed by this step
+         */
+        public long getFiles() {
+            return files;
+        }
+
+        /**
+         * @return Average number of bytes transferred per second
+         */
+        public double getBytesPerSecond() {
+            return rate(bytes, elapsedMillis);
+        }
+
+        /**
+         * @return Average number of files processed per second
+         */
+        public double getFilesPerSecond() {
+            return rate(files, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return action + ": " + bytes + " bytes, " + files + " files in " + elapsedMillis + " ms ("
+                    + Math.round(getBytesPerSecond()) + " B/s, " + Math.round(getFilesPerSecond()) + " files/s)";
+        }
+    }
+
+    private final long elapsedMillis;
+    private final long bytes;
+    private final long files;
+    private final double bytesPerSecond;
+    private final double filesPerSecond;
+    private final long etaMillis;
+    private final String currentFile;
+    private final List<Step> runningSteps;
+    private final List<Step> steps;
+    private final long startLatencyMillis;
+    private final long timeToFirstByteMillis;
+
+    TransferStatistics(long elapsedMillis, long bytes, long files, double bytesPerSecond, double filesPerSecond,
+                       long etaMillis, String currentFile, List<Step> runningSteps, List<Step> steps,
+                       long startLatencyMillis, long timeToFirstByteMillis) {
+        this.elapsedMillis = elapsedMillis;
+        this.bytes = bytes;
+        this.files = files;
+        this.bytesPerSecond = bytesPerSecond;
+        this.filesPerSecond = filesPerSecond;
+        this.etaMillis = etaMillis;
+        this.currentFile = currentFile;
+        this.runningSteps = Collections.unmodifiableList(runningSteps);
+        this.steps = Collections.unmodifiableList(steps);
+        this.startLatencyMillis = startLatencyMillis;
+        this.timeToFirstByteMillis = timeToFirstByteMillis;
+    }
+
+    /**
+     * @return Time elapsed since the task started, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Number of bytes transferred since the task started
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of files processed since the task started
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return Smoothed number of bytes transferred per second
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return Smoothed number of files processed per second
+     */
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * @return Estimated time before the task completes, in milliseconds, or {@code -1} if it cannot be estimated yet
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * @return The file last processed, or {@code null}
+     */
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * @return The metrics so far of the running steps, several steps run at the same time if they do not depend on
+     * each other
+     */
+    public List<Step> getRunningSteps() {
+        return runningSteps;
+    }
+
+    /**
+     * @return The metrics of the completed steps, in their completion order
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Time between the start of the task and the start of its first action, in milliseconds, or {@code -1} if
+     * no action has started yet
+     */
+    public long getStartLatencyMillis() {
+        return startLatencyMillis;
+    }
+
+    /**
+     * @return Time between the start of the task and the first byte transferred, in milliseconds, or {@code -1} if no
+     * byte has been transferred yet
+     */
+    public long getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "elapsed " + elapsedMillis + " ms (started after " + startLatencyMillis + " ms, first byte after "
+                + timeToFirstByteMillis + " ms), " + bytes + " bytes, " + files + " files, "
+                + Math.round(bytesPerSecond) + " B/s, " + Math.round(filesPerSecond) + " files/s, ETA "
+                + (etaMillis < 0 ? "unknown" : etaMillis + " ms") + ", running " + runningSteps + ", done " + steps;
+    }
+
+    private static double rate(long count, long elapsedMillis) {
+        return elapsedMillis > 0 ? count * 1000.0 / elapsedMillis : 0;
+    }
+}
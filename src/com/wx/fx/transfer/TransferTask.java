@@ -4,17 +4,40 @@ import com.wx.io.AccessorUtil;
 import com.wx.io.file.FileUtil;
 import com.wx.util.Format;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.concurrent.Task;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,19 +51,44 @@ import java.util.stream.Stream;
 public class TransferTask extends Task<Void> {
 
     private static final int SOURCE_MAX_CHARS = 20;
+    private static final int REMOVE_BATCH_SIZE = 64;
+    private static final long DISPLAY_TIMEOUT_MS = 1000;
+
+    /**
+     * How the {@link Action#COPY} action duplicates files that stay on the same device.
+     */
+    public enum CopyMode {
+        /**
+         * Copy the bytes of the files.
+         */
+        BYTES,
+        /**
+         * Create a hard link: the copy shares the content of the source, modifying one modifies the other. This must
+         * only be used for files that are never modified.
+         */
+        HARD_LINK,
+        /**
+         * Create a copy-on-write clone, if the file system supports it (Btrfs, XFS, APFS, ...). The copy shares the
+         * blocks of the source until either of them is modified.
+         */
+        REFLINK
+    }
 
     public enum Action {
-        COPY(false),
-        MOVE(false),
-        ZIP(false),
-        UNZIP(false),
-        MKDIR(true),
-        REMOVE(true);
+        COPY(false, true),
+        MOVE(false, true),
+        SYNC(false, true),
+        ZIP(false, true),
+        UNZIP(false, false),
+        MKDIR(true, false),
+        REMOVE(false, true);
 
         private final boolean isImmediate;
+        private final boolean isScanned;
 
-        Action(boolean isImmediate) {
+        Action(boolean isImmediate, boolean isScanned) {
             this.isImmediate = isImmediate;
+            this.isScanned = isScanned;
         }
     }
 
@@ -49,25 +97,113 @@ public class TransferTask extends Task<Void> {
     private final List<TaskInfo> finallyTasks;
     private final int stepsCount;
     private final ResourceBundle bundle;
+    private final int parallelism;
+    private final ChannelCopier copier;
+    private final Predicate<File> zipStoredFilter;
+    private final File journalFile;
+    private final SyncComparator syncComparator;
+    private final boolean syncDeleteExtraneous;
+    private final TokenBucket bandwidth;
+    private final TokenBucket fileRate;
+    private final Map<File, Integer> storeConcurrency;
+    private final FileLinker linker;
+    private StoreScheduler stores;
+    private TransferJournal journal;
     private Runnable onFinished;
+    private final long minDisplayTime;
+    private final CountDownLatch displayed = new CountDownLatch(1);
+    private volatile boolean awaitDisplay;
+    private final Object cancelLock = new Object();
+    private boolean cleaningUp;
+
+    private final ProgressAccumulator progress;
+    private final long progressInterval;
+    private final List<TaskInfo> running = new ArrayList<>();
+    private volatile StepScheduler<TaskInfo> scheduler;
+    private final TransferMetrics metrics = new TransferMetrics();
+    private final ReadOnlyObjectWrapper<TransferStatistics> statistics =
+            new ReadOnlyObjectWrapper<>(this, "statistics");
+    private final AtomicReference<TransferStatistics> pendingStatistics = new AtomicReference<>();
+
+
+
+
+    private TransferTask(Builder builder) {
+        this.tasks = builder.tasks;
+        this.finallyTasks = builder.finallyTasks;
+        this.bundle = builder.resources;
+        this.parallelism = builder.parallelism;
+        this.copier = new ChannelCopier(builder.chunkSize, builder.verification);
+        this.zipStoredFilter = builder.zipStoredFilter;
+        this.journalFile = builder.journal;
+        this.syncComparator = new SyncComparator(builder.syncCompareContent);
+        this.syncDeleteExtraneous = builder.syncDeleteExtraneous;
+        this.progressInterval = builder.progressInterval;
+        this.bandwidth = new TokenBucket(builder.bandwidthLimit, this::checkCancelled);
+        this.fileRate = new TokenBucket(builder.fileRateLimit, this::checkCancelled);
+        this.storeConcurrency = builder.storeConcurrency;
+        this.linker = new FileLinker(builder.copyMode);
+        this.minDisplayTime = builder.minDisplayTime;
+        Stream.concat(tasks.stream(), finallyTasks.stream())
+                .filter(t -> t.copyStrategy == null)
+                .forEach(t -> t.copyStrategy = builder.copyStrategy);
+        this.stepsCount = (int) Stream.concat(tasks.stream(), finallyTasks.stream())
+                .filter(t -> !t.action.isImmediate).count();
+        this.progress = new ProgressAccumulator(builder.progressInterval, p -> {
+            updateProgress(p, stepsCount);
+            updateStatistics(metrics.snapshot(p, stepsCount));
+        });
+
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).index = i;
+        }
+    }
 
-    private double progress = 0;
-    private double progressRate;
-    private double step = 0;
+    public int getStepsCount() {
+        return stepsCount;
+    }
 
+    /**
+     * Change the bandwidth limit of this task, this takes effect immediately, even while the task is running.
+     *
+     * @param bytesPerSecond Maximum number of bytes transferred per second, or {@code 0} for no limit
+     *
+     * @see Builder#setBandwidthLimit(long)
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        bandwidth.setRate(checkLimit(bytesPerSecond));
+    }
 
+    /**
+     * @return Maximum number of bytes transferred per second, or {@code 0} if there is no limit
+     */
+    public long getBandwidthLimit() {
+        return bandwidth.getRate();
+    }
 
+    /**
+     * Change the file rate limit of this task, this takes effect immediately, even while the task is running.
+     *
+     * @param filesPerSecond Maximum number of files processed per second, or {@code 0} for no limit
+     *
+     * @see Builder#setFileRateLimit(long)
+     */
+    public void setFileRateLimit(long filesPerSecond) {
+        fileRate.setRate(checkLimit(filesPerSecond));
+    }
 
-    private TransferTask(List<TaskInfo> tasks, List<TaskInfo> finallyTasks, ResourceBundle bundle) {
-        this.tasks = tasks;
-        this.finallyTasks = finallyTasks;
-        this.bundle = bundle;
-        this.stepsCount = (int) Stream.concat(tasks.stream(), finallyTasks.stream())
-                .filter(t -> !t.action.isImmediate).count();
+    /**
+     * @return Maximum number of files processed per second, or {@code 0} if there is no limit
+     */
+    public long getFileRateLimit() {
+        return fileRate.getRate();
     }
 
-    public int getStepsCount() {
-        return stepsCount;
+    private static long checkLimit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        return limit;
     }
 
 
@@ -75,33 +211,108 @@ public class TransferTask extends Task<Void> {
         this.onFinished = onFinished;
     }
 
+    /**
+     * Make this task wait, before its first action, until {@link #displayed()} is called. This must be called before
+     * the task starts. The sources are scanned in the meantime, and the task does not wait more than {@value
+     * #DISPLAY_TIMEOUT_MS} ms.
+     */
+    void awaitDisplay() {
+        awaitDisplay = true;
+    }
+
+    /**
+     * Signal that the dialog showing this task is displayed, see {@link #awaitDisplay()}.
+     */
+    void displayed() {
+        displayed.countDown();
+    }
+
+    /**
+     * Metrics of this task (throughput, estimated time left, file being processed and the metrics of each completed
+     * step), updated along with the progress. This property must only be accessed from the FX thread.
+     *
+     * @return The statistics property
+     */
+    public ReadOnlyObjectProperty<TransferStatistics> statisticsProperty() {
+        return statistics.getReadOnlyProperty();
+    }
+
+    /**
+     * Take a snapshot of the metrics of this task. Unlike {@link #statisticsProperty()}, this can be called from any
+     * thread, for instance to log the metrics once the task is done.
+     *
+     * @return The current metrics
+     */
+    public TransferStatistics getStatistics() {
+        return metrics.snapshot(progress.get(), stepsCount);
+    }
+
+    private void updateStatistics(TransferStatistics snapshot) {
+        // Like the other properties of the task, only the last snapshot is sent to the FX thread
+        if (pendingStatistics.getAndSet(snapshot) == null) {
+            Platform.runLater(() -> statistics.set(pendingStatistics.getAndSet(null)));
+        }
+    }
+
     @Override
     protected Void call() throws Exception {
+        metrics.start();
         setDefaultMessage();
 
+        for (TaskInfo task : tasks) {
+            if (task.dependencies.isEmpty()) {
+                // Scan the sources of the first actions while the dialog is showing up
+                task.startScan(this::isAborted);
+            }
+        }
+
         try {
-            Thread.sleep(1000);
+            waitForDisplay();
         } catch (InterruptedException e) {
             return null;
         }
         Exception ex = null;
         try {
-            execute(tasks);
+            stores = new StoreScheduler(storeConcurrency);
+            if (journalFile != null) {
+                journal = TransferJournal.open(journalFile);
+            }
+            scheduler = new StepScheduler<>();
+            scheduler.execute(tasks, t -> t.dependencies, this::executeStep);
         } catch (Exception e) {
             ex = e;
         } finally {
-            step = tasks.size();
-            progress = step;
-            updateProgress(progress, stepsCount);
+            scheduler = null;
+            if (stores == null) {
+                // The devices of the limits could not be found, the finally actions still run with the default limits
+                stores = new StoreScheduler();
+            }
+            progress.set(tasks.stream().filter(t -> !t.action.isImmediate).count());
+            synchronized (cancelLock) {
+                // The interruption of a cancellation must not abort the finally actions
+                cleaningUp = true;
+                Thread.interrupted();
+            }
 
             try {
-                execute(finallyTasks);
+                for (TaskInfo task : finallyTasks) {
+                    executeStep(task);
+                }
+                progress.set(stepsCount);
 
                 if (ex != null) {
                     throw ex;
                 }
+                if (journal != null) {
+                    // Everything succeeded, there is nothing left to resume
+                    journal.delete();
+                }
 
             } finally {
+                progress.flush();
+                if (journal != null) {
+                    journal.close();
+                }
                 if (onFinished != null) {
                     Platform.runLater(onFinished);
                 }
@@ -111,23 +322,129 @@ public class TransferTask extends Task<Void> {
         return null;
     }
 
-    private void execute(List<TaskInfo> tasks) throws IOException {
-        for (TaskInfo task : tasks) {
-            setDefaultMessage();
-            task.initialize();
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (cancelLock) {
+            // Once the finally actions are running, they are not interrupted
+            return super.cancel(mayInterruptIfRunning && !cleaningUp);
+        }
+    }
+
+    private void waitForDisplay() throws InterruptedException {
+        long start = System.nanoTime();
+        if (awaitDisplay) {
+            // A dialog slow to show up does not hold the transfer any longer than the timeout
+            displayed.await(DISPLAY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        long remaining = minDisplayTime - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+
+    private void executeStep(TaskInfo task) throws IOException {
+        if (isJournaled(task) && journal.isStepCompleted(task.index)) {
+            // Completed by a previous run
+            stepDone(task);
+            return;
+        }
+
+        synchronized (running) {
+            if (running.isEmpty()) {
+                setDefaultMessage();
+            }
+        }
+        task.metrics = metrics.stepStarted(task.action);
+        try {
+            task.initialize(abortedCheck(task));
+            prefetchScans(task);
 
+            synchronized (running) {
+                running.add(task);
+            }
             setMessage(task);
 
-            progressRate = 1.0 / task.totalSize;
+            long progressUnits = task.progressUnits();
+            task.progressRate = progressUnits > 0 ? 1.0 / progressUnits : 0;
 
             executeTask(task);
+        } finally {
+            metrics.stepCompleted(task.metrics);
+            synchronized (running) {
+                running.remove(task);
+                if (!running.isEmpty()) {
+                    setMessage(running.get(running.size() - 1));
+                }
+            }
+        }
+
+        if (isJournaled(task)) {
+            journal.stepCompleted(task.index);
+        }
+        stepDone(task);
+    }
+
+    private void prefetchScans(TaskInfo started) {
+        for (TaskInfo next : tasks) {
+            if (next.dependencies.contains(started) && !(isJournaled(next) && journal.isStepCompleted(next.index))
+                    && canScanEarly(next)) {
+                // Scan the sources of the next action while this one is running
+                next.startScan(this::isAborted);
+            }
+        }
+    }
 
-            if (!task.action.isImmediate) {
-                step++;
+    /**
+     * @return {@code true} if the sources of the action already exist, and no action it depends on writes or removes
+     * any file among them
+     */
+    private static boolean canScanEarly(TaskInfo task) {
+        if (!task.fixedPaths || !task.action.isScanned) {
+            return false;
+        }
+
+        File[] sources = task.sourcesSupplier.get();
+        if (!Stream.of(sources).allMatch(File::exists)) {
+            return false;
+        }
+
+        Set<TaskInfo> previous = new HashSet<>();
+        List<TaskInfo> pending = new ArrayList<>(task.dependencies);
+        while (!pending.isEmpty()) {
+            TaskInfo dependency = pending.remove(pending.size() - 1);
+            if (!previous.add(dependency)) {
+                continue;
+            }
+            if (!dependency.fixedPaths) {
+                return false;
             }
-            progress = step;
-            updateProgress(progress, stepsCount);
+            for (File modified : dependency.modifiedFiles()) {
+                if (Stream.of(sources).anyMatch(source -> overlap(source, modified))) {
+                    return false;
+                }
+            }
+            pending.addAll(dependency.dependencies);
+        }
+        return true;
+    }
+
+    private static boolean overlap(File a, File b) {
+        Path pathA = a.toPath().toAbsolutePath().normalize();
+        Path pathB = b.toPath().toAbsolutePath().normalize();
+        return pathA.startsWith(pathB) || pathB.startsWith(pathA);
+    }
+
+    private void stepDone(TaskInfo task) {
+        if (!task.action.isImmediate) {
+            // Complete the progress of the step, whatever its estimated size was
+            progress.add(1 - task.progress.sum());
         }
+        progress.flush();
+    }
+
+    private boolean isJournaled(TaskInfo task) {
+        return journal != null && task.index >= 0;
     }
 
     private void setDefaultMessage() {
@@ -152,12 +469,27 @@ public class TransferTask extends Task<Void> {
         switch (task.action) {
             case ZIP:
                 checkCancelled();
-                AccessorUtil.zip(task.target, this::incrementProgress, task.sources);
+                if (parallelism > 1) {
+                    zipParallel(task);
+                } else {
+                    AccessorUtil.zip(task.target, file -> fileTransferred(task, file, task.manifest.sizeOf(file)),
+                            task.sources);
+                }
                 break;
             case UNZIP:
-                for (File zip : task.sources) {
-                    checkCancelled();
-                    AccessorUtil.unzip(zip, task.target, this::incrementProgress);
+                if (parallelism > 1) {
+                    try (FileWorkerPool pool = newPool(task)) {
+                        StoreScheduler.Lane lane = stores.lane(() -> checkCancelled(task), task.target.toPath());
+                        new ParallelUnzipper(pool, lane).unzip(task.sources, task.target, bytes -> {
+                            bytesTransferred(task, bytes);
+                            checkCancelled();
+                        }, file -> fileProcessed(task, file));
+                    }
+                } else {
+                    for (File zip : task.sources) {
+                        checkCancelled();
+                        AccessorUtil.unzip(zip, task.target, file -> fileTransferred(task, file, file.length()));
+                    }
                 }
                 break;
             case MKDIR:
@@ -167,75 +499,391 @@ public class TransferTask extends Task<Void> {
                 break;
             case COPY:
             case MOVE:
-                for (File file : task.sources) {
-                    checkCancelled();
-                    traverse(task.action, file, task.target);
+                transferEntries(task);
+                break;
+            case SYNC:
+                transferEntries(task);
+                if (syncDeleteExtraneous) {
+                    removeExtraneous(task);
                 }
                 break;
             case REMOVE:
-                for (File file : task.sources) {
-                    if (file.exists()) {
-                        if (file.isDirectory()) {
-                            FileUtil.deleteDir(file);
-                        } else {
-                            file.delete();
-                        }
-                    }
-                }
+                removeEntries(task);
                 break;
             default:
                 throw new AssertionError();
         }
     }
 
-    private void traverse(Action action, File source, File destination) throws IOException {
-        if (source.isDirectory()) {
-            destination = new File(destination, source.getName());
-            FileUtil.autoCreateDirectory(destination);
+    private FileWorkerPool newPool(TaskInfo task) {
+        return parallelism > 1 ? new FileWorkerPool(parallelism, () -> checkCancelled(task)) : null;
+    }
+
+    private void transferEntries(TaskInfo task) throws IOException {
+        FileWorkerPool pool = newPool(task);
+        StoreScheduler.Lane lane = null;
+        FileStore sameStore = null;
+        CopyStrategy sourceStrategy = null;
+        Path renamed = null;
+        List<Path> movedDirectories = new ArrayList<>();
+        try {
+            for (FileManifest.Entry entry : task.manifest.entries()) {
+                checkCancelled();
+                if (renamed != null && entry.path().startsWith(renamed)) {
+                    // Moved along with its renamed parent directory
+                    renamed(task, entry);
+                    continue;
+                }
+                File target = entry.target(task.target);
 
-            for (File file : source.listFiles()) {
-                traverse(action, file, destination);
+                if (entry.isRoot()) {
+                    // The entries of a source follow its root, they are on the same devices
+                    lane = stores.lane(() -> checkCancelled(task), entry.path(), task.target.toPath());
+                    sameStore = sameStore(task, entry);
+                    sourceStrategy = task.copyStrategy.forSource(entry.path());
+                }
+                StoreScheduler.Lane entryLane = lane;
+                FileStore store = sameStore;
+                CopyStrategy strategy = sourceStrategy;
+
+                if (entry.isDirectory()) {
+                    if (task.action == Action.MOVE && store != null
+                            && renameDirectory(entry.path(), target.toPath())) {
+                        renamed = entry.path();
+                        renamed(task, entry);
+                        continue;
+                    }
+                    if (task.action == Action.SYNC && target.isFile()) {
+                        removeTree(target.toPath());
+                    }
+                    // Directories are created by this thread, before any of their files is transferred
+                    FileUtil.autoCreateDirectory(target);
+                    if (task.action == Action.MOVE) {
+                        movedDirectories.add(entry.path());
+                    }
+                } else if (pool != null) {
+                    pool.submit(() -> withPermit(entryLane,
+                            () -> transferFile(task, entry, target, store, strategy)));
+                } else {
+                    withPermit(entryLane, () -> transferFile(task, entry, target, store, strategy));
+                }
             }
-        } else {
-            Path from = source.toPath();
-            Path to = !source.isDirectory() && destination.isDirectory() ?
-                    new File(destination, source.getName()).toPath() :
-                    destination.toPath();
-            switch (action) {
-                case COPY:
-                    Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
-                    break;
-                case MOVE:
-                    Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
-                    break;
-                default:
-                    throw new AssertionError();
+
+            if (pool != null) {
+                pool.await();
+            }
+        } finally {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+
+        // Children first, the directories emptied by the move are deleted
+        for (int i = movedDirectories.size() - 1; i >= 0; i--) {
+            try {
+                Files.deleteIfExists(movedDirectories.get(i));
+            } catch (DirectoryNotEmptyException e) {
+                // Files have been added meanwhile, they are left in place
+            }
+        }
+    }
+
+    /**
+     * @return The device of a source and of the target, if they are the same and the action can take advantage of it
+     */
+    private FileStore sameStore(TaskInfo task, FileManifest.Entry root) throws IOException {
+        if (task.action != Action.MOVE && !(task.action == Action.COPY && linker.isEnabled())) {
+            return null;
+        }
+
+        FileStore store = StoreScheduler.fileStore(root.path());
+        return store.equals(StoreScheduler.fileStore(task.target.toPath())) ? store : null;
+    }
+
+    private static boolean renameDirectory(Path from, Path to) throws IOException {
+        if (Files.exists(to, LinkOption.NOFOLLOW_LINKS)) {
+            // Merged into the existing directory, one entry at a time
+            return false;
+        }
+
+        Files.createDirectories(to.getParent());
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Eg: distinct mount points of the same file system
+            return false;
+        }
+    }
+
+    private void renamed(TaskInfo task, FileManifest.Entry entry) {
+        if (!entry.isDirectory()) {
+            metrics.filesProcessed(task.metrics, 1);
+            incrementProgress(task, entry.size());
+        }
+    }
+
+    private void removeExtraneous(TaskInfo task) throws IOException {
+        Set<Path> expected = new HashSet<>();
+        for (FileManifest.Entry entry : task.manifest.entries()) {
+            expected.add(entry.target(task.target).toPath());
+        }
+
+        for (FileManifest.Entry entry : task.manifest.entries()) {
+            if (entry.isRoot() && entry.isDirectory()) {
+                List<FileManifest.Entry> existing = FileManifest.scan(
+                        new File[]{entry.target(task.target)}, false).entries();
+
+                // Walk backwards so that an extraneous directory is emptied before being deleted
+                for (int i = existing.size() - 1; i >= 0; i--) {
+                    checkCancelled();
+                    Path path = existing.get(i).path();
+                    if (!expected.contains(path)) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeTree(Path root) throws IOException {
+        List<FileManifest.Entry> entries = FileManifest.scan(new File[]{root.toFile()}, false).entries();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Files.delete(entries.get(i).path());
+        }
+    }
+
+    private void zipParallel(TaskInfo task) throws IOException {
+        String message = bundle.getString("transfer.zip") + "  (" + Format.formatSize(task.totalSize) + " -> ";
+
+        ProgressAccumulator.Throttle messageThrottle = new ProgressAccumulator.Throttle(progressInterval);
+
+        try (FileWorkerPool pool = newPool(task)) {
+            ParallelZipper zipper = new ParallelZipper(pool, parallelism, zipStoredFilter, this::checkCancelled);
+            zipper.zip(task.manifest.entries(), task.target, new ParallelZipper.Listener() {
+                @Override
+                public void progress(long bytes, long archiveSize) throws IOException {
+                    bytesTransferred(task, bytes);
+                    if (messageThrottle.ready()) {
+                        updateMessage(message + Format.formatSize(archiveSize) + ")");
+                    }
+                }
+
+                @Override
+                public void written(FileManifest.Entry entry) throws IOException {
+                    if (!entry.isDirectory()) {
+                        fileProcessed(task, entry.path());
+                    }
+                }
+            });
+        }
+    }
+
+    private void removeEntries(TaskInfo task) throws IOException {
+        List<FileManifest.Entry> files = new ArrayList<>();
+        // Directories grouped by depth, deepest first, so that a directory is always deleted after its content
+        TreeMap<Integer, List<FileManifest.Entry>> directories = new TreeMap<>(Comparator.reverseOrder());
+
+        for (FileManifest.Entry entry : task.manifest.entries()) {
+            if (entry.isDirectory()) {
+                directories.computeIfAbsent(entry.relativePath().getNameCount(), d -> new ArrayList<>()).add(entry);
+            } else {
+                files.add(entry);
+            }
+        }
+
+        FileWorkerPool pool = newPool(task);
+        try {
+            // A finally removal waits for the device instead of aborting once the task is cancelled
+            StoreScheduler.Lane lane = stores.lane(() -> checkCancelled(task),
+                    Stream.of(task.sources).map(File::toPath).toArray(Path[]::new));
+
+            removeBatches(task, pool, lane, files);
+            for (List<FileManifest.Entry> level : directories.values()) {
+                removeBatches(task, pool, lane, level);
+            }
+        } finally {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    private void removeBatches(TaskInfo task, FileWorkerPool pool, StoreScheduler.Lane lane,
+                               List<FileManifest.Entry> entries) throws IOException {
+        for (int from = 0; from < entries.size(); from += REMOVE_BATCH_SIZE) {
+            List<FileManifest.Entry> batch = entries.subList(from, Math.min(entries.size(), from + REMOVE_BATCH_SIZE));
+
+            checkCancelled(task);
+            if (pool != null) {
+                pool.submit(() -> withPermit(lane, () -> removeBatch(task, batch)));
+            } else {
+                withPermit(lane, () -> removeBatch(task, batch));
             }
+        }
+
+        if (pool != null) {
+            pool.await();
+        }
+    }
+
+    private void removeBatch(TaskInfo task, List<FileManifest.Entry> batch) throws IOException {
+        checkCancelled(task);
+        for (FileManifest.Entry entry : batch) {
+            Files.deleteIfExists(entry.path());
+        }
+        metrics.currentFile(batch.get(batch.size() - 1).path());
+        metrics.filesProcessed(task.metrics, batch.size());
+        incrementProgress(task, batch.size());
+    }
+
+    private static void withPermit(StoreScheduler.Lane lane, FileWorkerPool.IOJob job) throws IOException {
+        StoreScheduler.Permit permit = lane.acquire();
+        try {
+            job.run();
+        } finally {
+            permit.close();
+        }
+    }
+
+    private void transferFile(TaskInfo task, FileManifest.Entry entry, File target, FileStore sameStore,
+                              CopyStrategy strategy) throws IOException {
+        Path from = entry.path();
+        Path to = target.toPath();
+        metrics.currentFile(from);
+        fileRate.acquire(1);
+        switch (task.action) {
+            case COPY:
+                if (sameStore != null && linker.link(entry, to, sameStore)) {
+                    incrementProgress(task, entry.size());
+                } else {
+                    copyFile(task, entry, from, to, strategy);
+                }
+                break;
+            case MOVE:
+                if (sameStore != null) {
+                    Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+                    incrementProgress(task, entry.size());
+                } else {
+                    // Across devices, the file is copied in chunks to report its progress, then deleted
+                    copyFile(task, entry, from, to, strategy);
+                    Files.setLastModifiedTime(to, FileTime.fromMillis(entry.lastModified()));
+                    Files.delete(from);
+                }
+                break;
+            case SYNC:
+                if (syncComparator.isUpToDate(entry, to)) {
+                    incrementProgress(task, entry.size());
+                } else {
+                    if (Files.isDirectory(to, LinkOption.NOFOLLOW_LINKS)) {
+                        removeTree(to);
+                    }
+                    copyFile(task, entry, from, to, strategy);
+                    // Keep the modification time, so that the next synchronization finds the file up to date
+                    Files.setLastModifiedTime(to, FileTime.fromMillis(entry.lastModified()));
+                }
+                break;
+            default:
+                throw new AssertionError();
+        }
+        metrics.filesProcessed(task.metrics, 1);
+    }
+
+    private void copyFile(TaskInfo task, FileManifest.Entry entry, Path from, Path to, CopyStrategy strategy)
+            throws IOException {
+        ChannelCopier.ChunkListener listener = bytes -> {
+            bytesTransferred(task, bytes);
+            checkCancelled();
+        };
+        if (!isJournaled(task)) {
+            copier.copy(from, to, strategy, listener);
+            return;
+        }
+
+        long length = Files.exists(to) ? Files.size(to) : 0;
+        if (journal.isFileCompleted(task.index, entry) && length == entry.size()) {
+            incrementProgress(task, entry.size());
+            return;
+        }
 
-            incrementProgress(source);
+        // Resume after the last bytes known to be on the disk
+        long offset = Math.min(journal.verifiedOffset(task.index, entry), length);
+        incrementProgress(task, offset);
+        copier.copy(from, to, offset, strategy, listener,
+                position -> journal.filePartial(task.index, entry, position));
+        journal.fileCompleted(task.index, entry);
+    }
+
+    private void fileTransferred(TaskInfo task, File file, long size) {
+        try {
+            fileProcessed(task, file.toPath());
+            bytesTransferred(task, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
-    private void incrementProgress(File file) {
-        progress += (file.length() * progressRate);
-        updateProgress(progress, stepsCount);
+    private void fileProcessed(TaskInfo task, Path file) throws IOException {
+        metrics.currentFile(file);
+        metrics.filesProcessed(task.metrics, 1);
+        fileRate.acquire(1);
+    }
+
+    private void bytesTransferred(TaskInfo task, long bytes) throws IOException {
+        metrics.bytesTransferred(task.metrics, bytes);
+        incrementProgress(task, bytes);
+        bandwidth.acquire(bytes);
+    }
+
+    private void incrementProgress(TaskInfo task, long units) {
+        double amount = units * task.progressRate;
+        task.progress.add(amount);
+        progress.add(amount);
+    }
+
+    private boolean isAborted() {
+        StepScheduler<TaskInfo> current = scheduler;
+        // Concurrent steps are aborted as soon as one of them fails
+        return isCancelled() || current != null && current.isFailed();
+    }
+
+    private BooleanSupplier abortedCheck(TaskInfo task) {
+        // Finally actions clean up after the task, they run to completion even once it is cancelled
+        return task.cleanup ? () -> false : this::isAborted;
     }
 
     private void checkCancelled() {
-        if (isCancelled()) {
+        if (isAborted()) {
             throw new RuntimeException("Cancelled");
         }
     }
 
+    private void checkCancelled(TaskInfo task) {
+        if (!task.cleanup) {
+            checkCancelled();
+        }
+    }
+
     private static class TaskInfo {
 
         private final Action action;
         private final Supplier<File[]> sourcesSupplier;
         private final Supplier<File> targetSupplier;
 
+        private final List<TaskInfo> dependencies = new ArrayList<>();
+        private boolean cleanup;
+        private boolean fixedPaths;
+        private String id;
+        private CopyStrategy copyStrategy;
+        private int index = -1;
         private long totalSize;
         private File[] sources;
         private File target;
+        private Future<FileManifest> scan;
+        private FileManifest manifest;
+        private TransferMetrics.StepMetrics metrics;
+        private volatile double progressRate;
+        private final DoubleAdder progress = new DoubleAdder();
 
         public TaskInfo(Action action, Supplier<File[]> sourcesSupplier, Supplier<File> targetSupplier, long totalSize) {
             this.action = action;
@@ -244,33 +892,79 @@ public class TransferTask extends Task<Void> {
             this.totalSize = totalSize;
         }
 
-        public void initialize() {
+        /**
+         * Resolve the sources and target, then start scanning the sources in the background.
+         *
+         * @param cancelled Aborts the scan when {@code true}
+         */
+        public synchronized void startScan(BooleanSupplier cancelled) {
+            if (sources != null) {
+                return;
+            }
             sources = sourcesSupplier.get();
             target = targetSupplier.get();
 
-            if (totalSize < 0) {
-                totalSize = computeTotalSize(sources);
+            switch (action) {
+                case COPY:
+                case MOVE:
+                case SYNC:
+                case ZIP:
+                    scan = FileManifest.scanAsync(sources, true, cancelled);
+                    break;
+                case REMOVE:
+                    // Missing files are ignored and links are removed, not followed
+                    scan = FileManifest.scanAsync(
+                            Stream.of(sources).filter(File::exists).toArray(File[]::new),
+                            false, cancelled);
+                    break;
+                default:
+                    break;
             }
         }
 
-        private long computeTotalSize(File[] files) {
-            long size = 0;
-            for (File file : files) {
-                if (file.exists()) {
-                    if (file.isDirectory()) {
-                        size += computeTotalSize(file.listFiles());
-                    } else {
-                        size += file.length();
-                    }
-                }
+        /**
+         * @return Files written or removed by this action, only known if its paths are fixed
+         */
+        public List<File> modifiedFiles() {
+            List<File> modified = new ArrayList<>();
+            File destination = targetSupplier.get();
+            if (destination != null) {
+                modified.add(destination);
             }
+            if (action == Action.MOVE || action == Action.REMOVE || action == Action.MKDIR) {
+                modified.addAll(Arrays.asList(sourcesSupplier.get()));
+            }
+            return modified;
+        }
+
+        /**
+         * @return Number of units the progress of this action is measured in (bytes, or entries for a removal)
+         */
+        public long progressUnits() {
+            if (action == Action.REMOVE) {
+                return manifest.entries().size();
+            }
+            return totalSize;
+        }
 
-            return size;
+        public void initialize(BooleanSupplier cancelled) throws IOException {
+            startScan(cancelled);
+
+            if (scan != null) {
+                manifest = FileManifest.await(scan);
+            }
+            if (totalSize < 0 && action == Action.UNZIP) {
+                // Progress is reported in extracted bytes, read from the central directory of the archives
+                totalSize = ParallelUnzipper.uncompressedSize(sources);
+            }
+            if (totalSize < 0) {
+                totalSize = manifest != null ? manifest.totalSize() : 0;
+            }
         }
 
         @Override
         public String toString() {
-            return action + " " + Arrays.toString(sources) + " " + target;
+            return (id != null ? id + ": " : "") + action + " " + Arrays.toString(sources) + " " + target;
         }
     }
 
@@ -278,8 +972,23 @@ public class TransferTask extends Task<Void> {
 
         private final List<TaskInfo> tasks = new LinkedList<>();
         private final List<TaskInfo> finallyTasks = new LinkedList<>();
+        private final Map<String, TaskInfo> ids = new HashMap<>();
+        private TaskInfo lastAction;
         private ResourceBundle resources;
-
+        private int parallelism = 1;
+        private long chunkSize = ChannelCopier.DEFAULT_CHUNK_SIZE;
+        private Predicate<File> zipStoredFilter = ParallelZipper.ALREADY_COMPRESSED;
+        private File journal;
+        private boolean syncCompareContent;
+        private boolean syncDeleteExtraneous;
+        private Supplier<StreamChecksum> verification;
+        private long progressInterval = ProgressAccumulator.DEFAULT_INTERVAL_MS;
+        private long minDisplayTime;
+        private long bandwidthLimit;
+        private long fileRateLimit;
+        private final Map<File, Integer> storeConcurrency = new HashMap<>();
+        private CopyMode copyMode = CopyMode.BYTES;
+        private CopyStrategy copyStrategy = CopyStrategy.AUTOMATIC;
 
         public Builder setResources(ResourceBundle resources) {
             this.resources = resources;
@@ -287,12 +996,274 @@ public class TransferTask extends Task<Void> {
             return this;
         }
 
+        /**
+         * Set the number of worker threads used by the {@link Action#COPY}, {@link Action#MOVE}, {@link Action#SYNC},
+         * {@link Action#ZIP}, {@link Action#UNZIP} and {@link Action#REMOVE} actions. With a parallelism of {@code 1}
+         * (default), files are processed one after the other on the task thread.
+         * <p>
+         * With a higher parallelism, the entries of a ZIP archive are compressed in parallel and then written in order,
+         * and the entries of the archives to unzip are all extracted concurrently.
+         *
+         * @param parallelism Number of files that can be processed at the same time
+         *
+         * @return This builder
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+
+            return this;
+        }
+
+        /**
+         * Set the size of the chunks in which the {@link Action#COPY} action copies files. Progress is reported and
+         * cancellation is checked after each chunk.
+         *
+         * @param chunkSize Maximum number of bytes copied between two progress updates
+         *
+         * @return This builder
+         */
+        public Builder setChunkSize(long chunkSize) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+
+            return this;
+        }
+
+        /**
+         * Select the files that the parallel {@link Action#ZIP} action stores in the archive as is, instead of
+         * compressing them. By default, files that are already compressed (archives, images, audio and video) are
+         * stored.
+         *
+         * @param zipStoredFilter Matches the files to store without compression
+         *
+         * @return This builder
+         */
+        public Builder setZipStoredFilter(Predicate<File> zipStoredFilter) {
+            this.zipStoredFilter = Objects.requireNonNull(zipStoredFilter);
+
+            return this;
+        }
+
+        /**
+         * Make the task resumable. The task records its progress in the given journal: the actions that are completed,
+         * the files copied so far and how much of the file being copied is already on the disk. If the journal exists
+         * when the task starts, the completed actions and files (unmodified since) are skipped and partially copied
+         * files are continued. The journal is deleted once the task succeeds.
+         * <p>
+         * A journal must only be reused by a task built with the same actions. The finally actions are not journaled,
+         * they are run every time.
+         *
+         * @param journal Location of the journal
+         *
+         * @return This builder
+         */
+        public Builder setJournal(File journal) {
+            this.journal = journal;
+
+            return this;
+        }
+
+        /**
+         * Make the {@link Action#SYNC} action compare the files by their content rather than by their modification
+         * time. Files of the same size are then read on both sides to compare their digest.
+         *
+         * @param syncCompareContent Whether files must be compared by content
+         *
+         * @return This builder
+         */
+        public Builder setSyncCompareContent(boolean syncCompareContent) {
+            this.syncCompareContent = syncCompareContent;
+
+            return this;
+        }
+
+        /**
+         * Make the {@link Action#SYNC} action delete the files of the target directories that do not exist in the
+         * sources.
+         *
+         * @param syncDeleteExtraneous Whether extraneous files must be deleted
+         *
+         * @return This builder
+         */
+        public Builder setSyncDeleteExtraneous(boolean syncDeleteExtraneous) {
+            this.syncDeleteExtraneous = syncDeleteExtraneous;
+
+            return this;
+        }
+
+        /**
+         * Verify the files copied by the {@link Action#COPY} and {@link Action#SYNC} actions. The checksum of each file
+         * is computed while it is copied, then compared to the checksum of the destination. A copy that does not match
+         * fails the task with a {@link ChecksumMismatchException}.
+         * <p>
+         * Verified copies go through a user-space buffer rather than being transferred by the operating system.
+         *
+         * @param algorithm {@code CRC32}, {@code CRC32C} (if provided by the runtime) or the name of a {@link
+         *                  java.security.MessageDigest} algorithm, or {@code null} to disable verification
+         *
+         * @return This builder
+         *
+         * @throws IllegalArgumentException If the algorithm is not available
+         */
+        public Builder setVerification(String algorithm) {
+            this.verification = algorithm == null ? null : StreamChecksum.factory(algorithm);
+
+            return this;
+        }
+
+        /**
+         * Set the minimum time between two progress updates. Progress is accumulated in between, and always published
+         * at the end of each action.
+         *
+         * @param progressInterval Minimum time between two progress updates, in milliseconds
+         *
+         * @return This builder
+         */
+        public Builder setProgressInterval(long progressInterval) {
+            if (progressInterval < 0) {
+                throw new IllegalArgumentException("Progress interval must not be negative: " + progressInterval);
+            }
+            this.progressInterval = progressInterval;
+
+            return this;
+        }
+
+        /**
+         * Set the minimum time between the start of the task and the start of its first action, so that a dialog
+         * showing a short task does not only flash. The sources of the first actions are scanned in the meantime. By
+         * default, actions start right away.
+         *
+         * @param minDisplayTime Minimum time before the first action, in milliseconds
+         *
+         * @return This builder
+         */
+        public Builder setMinDisplayTime(long minDisplayTime) {
+            if (minDisplayTime < 0) {
+                throw new IllegalArgumentException("Display time must not be negative: " + minDisplayTime);
+            }
+            this.minDisplayTime = minDisplayTime;
+
+            return this;
+        }
+
+        /**
+         * Limit the bandwidth used by the {@link Action#COPY}, {@link Action#MOVE}, {@link Action#SYNC}, {@link
+         * Action#ZIP} and {@link Action#UNZIP} actions, for all their worker threads together. The limit can be
+         * changed while the task runs with {@link TransferTask#setBandwidthLimit(long)}.
+         * <p>
+         * Bytes are accounted after each chunk, a smaller chunk size (see {@link #setChunkSize(long)}) gives a smoother
+         * rate.
+         *
+         * @param bytesPerSecond Maximum number of bytes transferred per second, or {@code 0} for no limit (default)
+         *
+         * @return This builder
+         */
+        public Builder setBandwidthLimit(long bytesPerSecond) {
+            this.bandwidthLimit = checkLimit(bytesPerSecond);
+
+            return this;
+        }
+
+        /**
+         * Limit the number of files processed per second by the {@link Action#COPY}, {@link Action#MOVE}, {@link
+         * Action#SYNC}, {@link Action#ZIP} and {@link Action#UNZIP} actions, for all their worker threads together.
+         * This bounds the metadata operations of trees of small files. The limit can be changed while the task runs
+         * with {@link TransferTask#setFileRateLimit(long)}.
+         *
+         * @param filesPerSecond Maximum number of files processed per second, or {@code 0} for no limit (default)
+         *
+         * @return This builder
+         */
+        public Builder setFileRateLimit(long filesPerSecond) {
+            this.fileRateLimit = checkLimit(filesPerSecond);
+
+            return this;
+        }
+
+        /**
+         * Limit the number of files accessed at the same time on the device of the given file, across all the running
+         * actions. This overrides the default limit of the device: removable media and rotational disks are accessed
+         * by one thread at a time, other devices are only limited by the parallelism of each action.
+         * <p>
+         * The limits apply to the {@link Action#COPY}, {@link Action#MOVE}, {@link Action#SYNC}, {@link Action#REMOVE}
+         * and parallel {@link Action#UNZIP} actions, a file being accessed on the device of its source and on the
+         * device of its target.
+         *
+         * @param file  Any file on the device (or its nearest existing parent)
+         * @param limit Maximum number of files accessed concurrently on the device
+         *
+         * @return This builder
+         *
+         * @see #setParallelism(int)
+         */
+        public Builder setStoreConcurrency(File file, int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Limit must be positive: " + limit);
+            }
+            this.storeConcurrency.put(Objects.requireNonNull(file), limit);
+
+            return this;
+        }
+
+        /**
+         * Set how the {@link Action#COPY} action duplicates the files whose target is on the same device. Files that
+         * cannot be linked (other device, unsupported file system, symbolic link, ...) are copied byte by byte.
+         *
+         * @param copyMode How files are duplicated, {@link CopyMode#BYTES} by default
+         *
+         * @return This builder
+         */
+        public Builder setCopyMode(CopyMode copyMode) {
+            this.copyMode = Objects.requireNonNull(copyMode);
+
+            return this;
+        }
+
+        /**
+         * Set the strategy copying the bytes of the files, for all the actions that do not set their own with {@link
+         * #using(CopyStrategy)}.
+         *
+         * @param copyStrategy Strategy copying the bytes, {@link CopyStrategy#AUTOMATIC} by default
+         *
+         * @return This builder
+         */
+        public Builder setCopyStrategy(CopyStrategy copyStrategy) {
+            this.copyStrategy = Objects.requireNonNull(copyStrategy);
+
+            return this;
+        }
+
+        /**
+         * Set the strategy copying the bytes of the files of the last action added with {@code action(...)}.
+         *
+         * @param copyStrategy Strategy copying the bytes
+         *
+         * @return This builder
+         *
+         * @throws IllegalStateException If no action has been added yet
+         * @see #setCopyStrategy(CopyStrategy)
+         */
+        public Builder using(CopyStrategy copyStrategy) {
+            requireLastAction().copyStrategy = Objects.requireNonNull(copyStrategy);
+
+            return this;
+        }
+
         public Builder action(Action action, File source, File target) {
-            return action(action, () -> new File[]{source}, () -> target, -1);
+            return action(action, new File[]{source}, target);
         }
 
         public Builder action(Action action, File[] sources, File target) {
-            return action(action, () -> sources, () -> target, -1);
+            action(action, () -> sources, () -> target, -1);
+            // Known before the action runs, its sources can be scanned early
+            lastAction.fixedPaths = true;
+
+            return this;
         }
 
         public Builder action(Action action, Supplier<File[]> sourcesSupplier, File target) {
@@ -304,11 +1275,83 @@ public class TransferTask extends Task<Void> {
         }
 
         public Builder action(Action action, Supplier<File[]> sourcesSupplier, Supplier<File> targetSupplier, long totalSize) {
-            this.tasks.add(new TaskInfo(action, sourcesSupplier, targetSupplier, totalSize));
+            TaskInfo task = new TaskInfo(action, sourcesSupplier, targetSupplier, totalSize);
+            if (lastAction != null) {
+                // Actions run one after the other, unless specified otherwise with after(...)
+                task.dependencies.add(lastAction);
+            }
+
+            this.tasks.add(task);
+            this.lastAction = task;
+
+            return this;
+        }
+
+        /**
+         * Give an identifier to the last action added with {@code action(...)}, so that other actions can depend on it
+         * with {@link #after(String...)}.
+         *
+         * @param id Unique identifier of the action
+         *
+         * @return This builder
+         *
+         * @throws IllegalStateException    If no action has been added yet
+         * @throws IllegalArgumentException If the identifier is already used
+         */
+        public Builder named(String id) {
+            TaskInfo task = requireLastAction();
+            if (ids.containsKey(Objects.requireNonNull(id))) {
+                throw new IllegalArgumentException("Duplicate action: " + id);
+            }
+            task.id = id;
+            ids.put(id, task);
 
             return this;
         }
 
+        /**
+         * Set the actions that the last action added with {@code action(...)} depends on, replacing the default
+         * dependency on the action added just before. The action starts as soon as all these actions are done,
+         * actions that do not depend on each other run concurrently. Without any identifier, the action does not depend
+         * on any other action.
+         * <p>
+         * If an action fails, the actions that have not started yet are skipped and the running actions are aborted.
+         * The finally actions are run once all the actions are done, one after the other.
+         * <p>
+         * Since an action can only depend on actions added before it, the actions cannot depend on each other in a
+         * cycle.
+         *
+         * @param ids Identifiers of the actions to wait for, given with {@link #named(String)}
+         *
+         * @return This builder
+         *
+         * @throws IllegalStateException    If no action has been added yet
+         * @throws IllegalArgumentException If an identifier is unknown
+         */
+        public Builder after(String... ids) {
+            TaskInfo task = requireLastAction();
+
+            List<TaskInfo> dependencies = new ArrayList<>(ids.length);
+            for (String id : ids) {
+                TaskInfo dependency = this.ids.get(id);
+                if (dependency == null || dependency == task) {
+                    throw new IllegalArgumentException("Unknown action: " + id);
+                }
+                dependencies.add(dependency);
+            }
+            task.dependencies.clear();
+            task.dependencies.addAll(dependencies);
+
+            return this;
+        }
+
+        private TaskInfo requireLastAction() {
+            if (lastAction == null) {
+                throw new IllegalStateException("No action to configure");
+            }
+            return lastAction;
+        }
+
         public Builder finallyAction(Action action, File source, File target) {
             return finallyAction(action, () -> new File[]{source}, () -> target, -1);
         }
@@ -326,7 +1369,9 @@ public class TransferTask extends Task<Void> {
         }
 
         public Builder finallyAction(Action action, Supplier<File[]> sourcesSupplier, Supplier<File> targetSupplier, long totalSize) {
-            this.finallyTasks.add(new TaskInfo(action, sourcesSupplier, targetSupplier, totalSize));
+            TaskInfo task = new TaskInfo(action, sourcesSupplier, targetSupplier, totalSize);
+            task.cleanup = true;
+            this.finallyTasks.add(task);
 
             return this;
         }
@@ -336,7 +1381,7 @@ public class TransferTask extends Task<Void> {
                 resources = ResourceBundle.getBundle("fx_text");
             }
 
-            return new TransferTask(tasks, finallyTasks, resources);
+            return new TransferTask(this);
         }
 
     }
@@ -0,0 +1,397 @@
+package com.wx.fx.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Minimal ZIP archive writer that accepts entries which have already been compressed elsewhere (eg: by other
+ * threads), something {@link java.util.zip.ZipOutputStream} does not allow.
+ * <p>
+ * Entries can also be streamed from a file, in which case the archive is patched afterwards with the CRC and sizes of
+ * the entry, so that no data descriptor is needed. ZIP64 records are written when the archive requires them.
+ * <p>
+ * Created on 17/10/2026
+ *
+ * @author Raffaele Canale (raffaelecanale@gmail.com)
+ * @version 0.1
+ */
+class ZipArchiveWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+
+    private static final short VERSION = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short FLAG_UTF8 = 0x0800;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Progress listener for streamed entries.
+     */
+    @FunctionalInterface
+    interface StreamListener {
+
+        /**
+         * Called after each block read from the streamed file. Throwing aborts the archive.
+         *
+         * @param bytes Number of uncompressed bytes read
+         *
+         * @throws IOException To abort
+         */
+        void read(long bytes) throws IOException;
+    }
+
+    private static class CentralEntry {
+        private final byte[] name;
+        private final int method;
+        private final int dosTime;
+        private final long offset;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        private CentralEntry(byte[] name, int method, int dosTime, long offset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.offset = offset;
+        }
+
+        private boolean isZip64() {
+            return size >= MAX_32 || compressedSize >= MAX_32 || offset >= MAX_32;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Create the archive, replacing any existing file.
+     *
+     * @param archive Location of the archive
+     *
+     * @throws IOException If the archive cannot be created
+     */
+    ZipArchiveWriter(Path archive) throws IOException {
+        this.channel = FileChannel.open(archive, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @return Number of bytes written to the archive so far
+     */
+    long size() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Add a directory entry.
+     *
+     * @param name         Name of the directory, ending with a '/'
+     * @param lastModified Modification time of the directory (in milliseconds)
+     *
+     * @throws IOException If the entry cannot be written
+     */
+    void writeDirectory(String name, long lastModified) throws IOException {
+        writeEntry(name, ZipEntry.STORED, lastModified, new byte[0], 0, 0, 0);
+    }
+
+    /**
+     * Add an entry whose data has already been compressed with the given method.
+     *
+     * @param name         Name of the entry
+     * @param method       {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param lastModified Modification time of the entry (in milliseconds)
+     * @param data         Compressed data
+     * @param length       Number of bytes of compressed data
+     * @param crc          CRC-32 of the uncompressed data
+     * @param size         Size of the uncompressed data
+     *
+     * @throws IOException If the entry cannot be written
+     */
+    void writeEntry(String name, int method, long lastModified, byte[] data, int length, long crc, long size)
+            throws IOException {
+        CentralEntry entry = new CentralEntry(encode(name), method, dosTime(lastModified), channel.position());
+        entry.crc = crc;
+        entry.compressedSize = length;
+        entry.size = size;
+
+        writeLocalHeader(entry, false);
+        writeFully(ByteBuffer.wrap(data, 0, length));
+        entries.add(entry);
+    }
+
+    /**
+     * Add an entry by compressing a file on the calling thread.
+     *
+     * @param name         Name of the entry
+     * @param method       {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param lastModified Modification time of the entry (in milliseconds)
+     * @param file         File to compress
+     * @param expectedSize Expected size of the file
+     * @param listener     Notified of the bytes read from the file
+     *
+     * @throws IOException If the file cannot be read or the entry cannot be written
+     */
+    void writeStreamed(String name, int method, long lastModified, Path file, long expectedSize,
+                       StreamListener listener) throws IOException {
+        CentralEntry entry = new CentralEntry(encode(name), method, dosTime(lastModified), channel.position());
+        // Keep room for the ZIP64 sizes if the entry might need them, with a margin for a file still growing
+        boolean zip64 = maxCompressedSize(method, expectedSize) >= MAX_32 - BUFFER_SIZE;
+        entry.size = zip64 ? MAX_32 : 0;
+        writeLocalHeader(entry, zip64);
+        long dataStart = channel.position();
+
+        CRC32 crc = new CRC32();
+        Deflater deflater = method == ZipEntry.DEFLATED ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] output = new byte[BUFFER_SIZE];
+        long size = 0;
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+                size += read;
+
+                if (deflater == null) {
+                    writeFully(ByteBuffer.wrap(buffer, 0, read));
+                } else {
+                    deflater.setInput(buffer, 0, read);
+                    while (!deflater.needsInput()) {
+                        int count = deflater.deflate(output);
+                        writeFully(ByteBuffer.wrap(output, 0, count));
+                    }
+                }
+                listener.read(read);
+            }
+
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(output);
+                    writeFully(ByteBuffer.wrap(output, 0, count));
+                }
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        entry.crc = crc.getValue();
+        entry.size = size;
+        entry.compressedSize = channel.position() - dataStart;
+        if (!zip64 && (entry.size >= MAX_32 || entry.compressedSize >= MAX_32)) {
+            throw new IOException("Entry " + name + " grew beyond 4GB while being archived");
+        }
+
+        // Patch the local header now that the sizes are known
+        long end = channel.position();
+        channel.position(entry.offset);
+        writeLocalHeader(entry, zip64);
+        channel.position(end);
+
+        entries.add(entry);
+    }
+
+    /**
+     * Write the central directory and close the archive.
+     *
+     * @throws IOException If the central directory cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long centralStart = channel.position();
+            for (CentralEntry entry : entries) {
+                writeCentralHeader(entry);
+            }
+            long centralEnd = channel.position();
+            long centralSize = centralEnd - centralStart;
+
+            boolean zip64 = entries.size() >= MAX_16 || centralStart >= MAX_32 || centralSize >= MAX_32;
+            if (zip64) {
+                header.clear();
+                header.putInt(ZIP64_END_SIG);
+                header.putLong(44);
+                header.putShort(VERSION_ZIP64);
+                header.putShort(VERSION_ZIP64);
+                header.putInt(0);
+                header.putInt(0);
+                header.putLong(entries.size());
+                header.putLong(entries.size());
+                header.putLong(centralSize);
+                header.putLong(centralStart);
+
+                header.putInt(ZIP64_LOCATOR_SIG);
+                header.putInt(0);
+                header.putLong(centralEnd);
+                header.putInt(1);
+                flushHeader();
+            }
+
+            header.clear();
+            header.putInt(END_SIG);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) Math.min(entries.size(), MAX_16));
+            header.putShort((short) Math.min(entries.size(), MAX_16));
+            header.putInt((int) Math.min(centralSize, MAX_32));
+            header.putInt((int) Math.min(centralStart, MAX_32));
+            header.putShort((short) 0);
+            flushHeader();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Close the archive without writing the central directory, used when the archive is abandoned.
+     */
+    void abort() throws IOException {
+        channel.close();
+    }
+
+    private static long maxCompressedSize(int method, long size) {
+        if (method != ZipEntry.DEFLATED) {
+            return size;
+        }
+        // Bound of zlib (deflateBound), incompressible data is stored in blocks with a few bytes of overhead each
+        return size + (size >> 12) + (size >> 14) + (size >> 25) + 13;
+    }
+
+    private void writeLocalHeader(CentralEntry entry, boolean zip64) throws IOException {
+        header.clear();
+        header.putInt(LOCAL_HEADER_SIG);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION);
+        header.putShort(FLAG_UTF8);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (zip64 ? MAX_32 : entry.compressedSize));
+        header.putInt((int) (zip64 ? MAX_32 : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        flushHeader();
+
+        writeFully(ByteBuffer.wrap(entry.name));
+
+        if (zip64) {
+            header.clear();
+            header.putShort(ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(entry.size);
+            header.putLong(entry.compressedSize);
+            flushHeader();
+        }
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        boolean zip64 = entry.isZip64();
+        int extraLength = 0;
+        if (zip64) {
+            extraLength = 4;
+            extraLength += entry.size >= MAX_32 ? 8 : 0;
+            extraLength += entry.compressedSize >= MAX_32 ? 8 : 0;
+            extraLength += entry.offset >= MAX_32 ? 8 : 0;
+        }
+
+        header.clear();
+        header.putInt(CENTRAL_HEADER_SIG);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION);
+        header.putShort(FLAG_UTF8);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) Math.min(entry.compressedSize, MAX_32));
+        header.putInt((int) Math.min(entry.size, MAX_32));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) extraLength);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(isDirectory(entry) ? 0x10 : 0);
+        header.putInt((int) Math.min(entry.offset, MAX_32));
+        flushHeader();
+
+        writeFully(ByteBuffer.wrap(entry.name));
+
+        if (zip64) {
+            header.clear();
+            header.putShort(ZIP64_EXTRA_ID);
+            header.putShort((short) (extraLength - 4));
+            if (entry.size >= MAX_32) {
+                header.putLong(entry.size);
+            }
+            if (entry.compressedSize >= MAX_32) {
+                header.putLong(entry.compressedSize);
+            }
+            if (entry.offset >= MAX_32) {
+                header.putLong(entry.offset);
+            }
+            flushHeader();
+        }
+    }
+
+    private static boolean isDirectory(CentralEntry entry) {
+        return entry.name.length > 0 && entry.name[entry.name.length - 1] == '/';
+    }
+
+    private void flushHeader() throws IOException {
+        header.flip();
+        writeFully(header);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] encode(String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_16) {
+            throw new IOException("Entry name too long: " + name);
+        }
+        return bytes;
+    }
+
+    private static int dosTime(long time) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (date.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (date.getYear() - 1980) << 25
+                | date.getMonthValue() << 21
+                | date.getDayOfMonth() << 16
+                | date.getHour() << 11
+                | date.getMinute() << 5
+                | date.getSecond() >> 1;
+    }
+}